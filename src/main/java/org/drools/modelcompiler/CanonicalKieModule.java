@@ -18,7 +18,10 @@ package org.drools.modelcompiler;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.Set;
 
 import org.drools.compiler.kie.builder.impl.KieProject;
 import org.drools.compiler.kie.builder.impl.ResultsImpl;
@@ -26,19 +29,28 @@ import org.drools.compiler.kie.builder.impl.ZipKieModule;
 import org.drools.compiler.kproject.models.KieBaseModelImpl;
 import org.drools.core.impl.InternalKnowledgeBase;
 import org.drools.core.util.IoUtils;
+import org.drools.model.Model;
 import org.drools.modelcompiler.builder.KieBaseBuilder;
+import org.drools.modelcompiler.jfr.FlightRecorderEvents;
 import org.kie.api.KieBaseConfiguration;
 import org.kie.api.builder.ReleaseId;
 import org.kie.api.builder.model.KieModuleModel;
 
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+
 public class CanonicalKieModule extends ZipKieModule {
 
     public static final String PACKAGE_LIST = "META-INF/packages";
     public static final String RULES_FILE_NAME = "Rules";
     public static final String VARIABLES_FILE_NAME = "Variables";
+    public static final String MODEL_REGISTRY_PACKAGE = "org.drools.project.model";
+    public static final String MODEL_REGISTRY_FILE_NAME = "ModelRegistry";
 
     private final Collection<String> ruleClassesNames;
 
+    private KieProjectClassLoader kieProjectCL;
+
     public CanonicalKieModule( ReleaseId releaseId, KieModuleModel kieProject, File file ) {
         this( releaseId, kieProject, file, null );
     }
@@ -50,40 +62,107 @@ public class CanonicalKieModule extends ZipKieModule {
 
     @Override
     public InternalKnowledgeBase createKieBase( KieBaseModelImpl kBaseModel, KieProject kieProject, ResultsImpl messages, KieBaseConfiguration conf ) {
-        KieProjectClassLoader kieProjectCL = new KieProjectClassLoader(kieProject);
+        Object event = FlightRecorderEvents.beginBuildPhase( FlightRecorderEvents.CREATE_KIE_BASE, kBaseModel.getName() );
+        try {
+            KieBaseBuilder builder = new KieBaseBuilder( kBaseModel, kieProject.getClassLoader(), conf );
+            addModels( builder, kBaseModel, kieProject );
+            return builder.createKieBase();
+        } finally {
+            FlightRecorderEvents.endBuildPhase( event );
+        }
+    }
+
+    /**
+     * Upgrades a KieBase created from a previous version of this kjar to the rules of this version.
+     * The generated models of the two versions are compared package by package and rule by rule through
+     * the fingerprints of the rules, so only the differences are applied to the live KieBase and the
+     * sessions created from it keep their working memory. The packages no longer contained in this version
+     * are removed from the KieBase.
+     * This upgrade is opt-in: KieContainer.updateToVersion rebuilds the KieBases through the KieBase updater of
+     * drools-compiler, which has no extension point for a KieModule to apply its own update, so the callers
+     * wanting an incremental upgrade invoke this method on the new module with the KieBase to upgrade.
+     */
+    public InternalKnowledgeBase updateKieBase( InternalKnowledgeBase kBase, KieBaseModelImpl kBaseModel, KieProject kieProject ) {
+        KieBaseBuilder builder = new KieBaseBuilder( kBaseModel, kieProject.getClassLoader(), null );
+        addModels( builder, kBaseModel, kieProject );
+        return builder.updateKieBase( kBase );
+    }
 
-        KieBaseBuilder builder = new KieBaseBuilder( kBaseModel, kieProject.getClassLoader(), conf );
+    private void addModels( KieBaseBuilder builder, KieBaseModelImpl kBaseModel, KieProject kieProject ) {
+        KieProjectClassLoader kieProjectCL = getKieProjectClassLoader( kieProject );
 
-        if (ruleClassesNames == null) {
-            String packages = null;
-            try {
-                packages = new String( IoUtils.readBytesFromInputStream( kieProjectCL.getResourceAsStream( PACKAGE_LIST ) ) );
-            } catch (IOException e) {
-                throw new RuntimeException( e );
-            }
-            for ( String pkg : packages.split( "\n" ) ) {
-                builder.addModel( kieProjectCL.createInstance( pkg + "." + RULES_FILE_NAME ) );
-            }
-        } else {
-            ruleClassesNames.forEach( s -> builder.addModel( kieProjectCL.createInstance( s ) ) );
+        if (ruleClassesNames != null) {
+            kieProjectCL.<Model>createInstances( ruleClassesNames ).forEach( builder::addModel );
+            return;
         }
 
-        return builder.createKieBase();
+        CanonicalModelRegistry modelRegistry = kieProjectCL.createModelRegistry();
+        if (modelRegistry != null) {
+            // the types metadata have been computed when the kjar was built, so they don't need to be read again from the classes
+            builder.registerTypes( modelRegistry.getPatternClasses(), modelRegistry.getEventClasses(), modelRegistry.getImmutableClasses() );
+            modelRegistry.getModelsForKieBase( kBaseModel.getName() ).forEach( builder::addModel );
+            return;
+        }
+
+        // kjar built without a model registry, read the list of its packages
+        String packages = null;
+        try {
+            packages = new String( IoUtils.readBytesFromInputStream( kieProjectCL.getResourceAsStream( PACKAGE_LIST ) ) );
+        } catch (IOException e) {
+            throw new RuntimeException( e );
+        }
+        List<String> rulesClassNames = new ArrayList<>();
+        for ( String pkg : packages.split( "\n" ) ) {
+            rulesClassNames.add( pkg + "." + RULES_FILE_NAME );
+        }
+        kieProjectCL.<Model>createInstances( rulesClassNames ).forEach( builder::addModel );
     }
 
-    class KieProjectClassLoader extends ClassLoader {
-        public KieProjectClassLoader(KieProject kieProject) {
-            super(kieProject.getClassLoader());
+    /**
+     * All the KieBases created from this module share the same class loader, so the classes of the kjar are defined
+     * only once. Nothing else keeps a reference to it: when the module is retired and its KieBases are discarded
+     * the class loader and all the generated classes can be garbage collected.
+     */
+    private synchronized KieProjectClassLoader getKieProjectClassLoader( KieProject kieProject ) {
+        if ( kieProjectCL == null || kieProjectCL.getParent() != kieProject.getClassLoader() ) {
+            kieProjectCL = new KieProjectClassLoader( this, kieProject );
         }
+        return kieProjectCL;
+    }
 
-        public Class<?> loadClass(String className) throws ClassNotFoundException {
-            try {
-                return super.loadClass( className );
-            } catch (ClassNotFoundException cnfe) { }
+    /**
+     * Defines the classes contained in the kjar. It is parallel capable and indexes the class names of the kjar
+     * once, so the classes of different packages can be loaded concurrently and a miss doesn't require any lookup
+     * in the kjar. All the Rules classes, together with the lambdas they reference, are preloaded in parallel
+     * when the model registry is created.
+     */
+    static class KieProjectClassLoader extends ClassLoader {
+
+        static {
+            registerAsParallelCapable();
+        }
+
+        private final CanonicalKieModule kieModule;
+        private final Set<String> classNames;
 
-            String fileName = className.replace( '.', '/' ) + ".class";
-            byte[] bytes = getBytes(fileName);
+        private volatile boolean rulesClassesPreloaded;
 
+        public KieProjectClassLoader(CanonicalKieModule kieModule, KieProject kieProject) {
+            super(kieProject.getClassLoader());
+            this.kieModule = kieModule;
+            this.classNames = kieModule.getFileNames().stream()
+                                       .filter( fileName -> fileName.endsWith( ".class" ) )
+                                       .map( fileName -> fileName.substring( 0, fileName.length() - ".class".length() ).replace( '/', '.' ) )
+                                       .collect( toSet() );
+        }
+
+        @Override
+        protected Class<?> findClass(String className) throws ClassNotFoundException {
+            if ( !classNames.contains( className ) ) {
+                throw new ClassNotFoundException(className);
+            }
+
+            byte[] bytes = kieModule.getBytes( className.replace( '.', '/' ) + ".class" );
             if (bytes == null) {
                 throw new ClassNotFoundException(className);
             }
@@ -91,6 +170,39 @@ public class CanonicalKieModule extends ZipKieModule {
             return defineClass(className, bytes, 0, bytes.length);
         }
 
+        public CanonicalModelRegistry createModelRegistry() {
+            String registryClassName = MODEL_REGISTRY_PACKAGE + "." + MODEL_REGISTRY_FILE_NAME;
+            if ( !classNames.contains( registryClassName ) ) {
+                return null;
+            }
+            preloadRulesClasses();
+            return createInstance( registryClassName );
+        }
+
+        public void preloadRulesClasses() {
+            if (rulesClassesPreloaded) {
+                return;
+            }
+            rulesClassesPreloaded = true;
+            String rulesClassSuffix = "." + RULES_FILE_NAME;
+            classNames.parallelStream()
+                      .filter( className -> className.endsWith( rulesClassSuffix ) || className.contains( rulesClassSuffix + "$" ) )
+                      .forEach( this::preloadClass );
+        }
+
+        private void preloadClass(String className) {
+            try {
+                loadClass( className );
+            } catch (ClassNotFoundException e) {
+                throw new RuntimeException( e );
+            }
+        }
+
+        public <T> List<T> createInstances(Collection<String> classNames) {
+            // the classes are loaded in parallel, but the instances are returned following the order of the given names
+            return classNames.parallelStream().map( this::<T>createInstance ).collect( toList() );
+        }
+
         public <T> T createInstance(String className) {
             try {
                 return (T) loadClass( className ).newInstance();
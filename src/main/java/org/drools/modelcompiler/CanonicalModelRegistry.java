@@ -0,0 +1,49 @@
+/*
+ * Copyright 2005 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.modelcompiler;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.drools.model.Model;
+
+/**
+ * Implemented by the registry class generated into a canonical kjar, directly referencing all the models
+ * it contains, so they can be loaded without parsing the packages list and without a reflective lookup per model.
+ */
+public interface CanonicalModelRegistry {
+
+    List<Model> getModels();
+
+    /**
+     * Returns the models of the packages belonging to the given KieBase or all the models
+     * if the KieBase wasn't defined when the kjar has been built.
+     */
+    List<Model> getModelsForKieBase( String kBaseName );
+
+    Collection<Class<?>> getPatternClasses();
+
+    /**
+     * Returns the pattern classes annotated as events, as found when the kjar has been built.
+     */
+    Collection<Class<?>> getEventClasses();
+
+    /**
+     * Returns the pattern classes annotated as {@link Immutable}, as found when the kjar has been built.
+     */
+    Collection<Class<?>> getImmutableClasses();
+}
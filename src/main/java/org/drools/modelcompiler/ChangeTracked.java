@@ -0,0 +1,45 @@
+/*
+ * Copyright 2005 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.modelcompiler;
+
+import org.kie.api.runtime.rule.EntryPoint;
+import org.kie.api.runtime.rule.FactHandle;
+
+/**
+ * Implemented by the change tracking subclasses generated for the pattern classes of a kjar,
+ * which record the properties modified through their setters.
+ */
+public interface ChangeTracked {
+
+    String[] getModifiedProperties();
+
+    void resetModifiedProperties();
+
+    /**
+     * Updates a fact propagating only the modifications of the properties changed since its last update,
+     * so only the constraints reacting on them are reevaluated.
+     */
+    static void update( EntryPoint entryPoint, FactHandle factHandle, Object fact ) {
+        if (fact instanceof ChangeTracked) {
+            ChangeTracked changeTracked = (ChangeTracked) fact;
+            entryPoint.update( factHandle, fact, changeTracked.getModifiedProperties() );
+            changeTracked.resetModifiedProperties();
+        } else {
+            entryPoint.update( factHandle, fact );
+        }
+    }
+}
@@ -24,6 +24,9 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 import org.drools.core.RuleBaseConfiguration;
 import org.drools.core.base.ClassFieldAccessorCache;
@@ -78,49 +81,142 @@ import org.drools.model.functions.Predicate1;
 import org.drools.model.impl.DeclarationImpl;
 import org.drools.model.patterns.QueryCallPattern;
 import org.drools.modelcompiler.consequence.LambdaConsequence;
+import org.drools.modelcompiler.consequence.MeteredLambdaConsequence;
 import org.drools.modelcompiler.constraints.ConstraintEvaluator;
 import org.drools.modelcompiler.constraints.LambdaAccumulator;
 import org.drools.modelcompiler.constraints.LambdaConstraint;
 import org.drools.modelcompiler.constraints.LambdaReadAccessor;
+import org.drools.modelcompiler.constraints.MeteredLambdaConstraint;
 import org.drools.modelcompiler.constraints.TemporalConstraintEvaluator;
 import org.drools.modelcompiler.constraints.UnificationConstraint;
+import org.drools.modelcompiler.jfr.FlightRecorderEvents;
+import org.drools.modelcompiler.metrics.ConstraintMetricsRegistry;
+import org.drools.modelcompiler.metrics.KieBaseMetricsTracker;
+import org.drools.modelcompiler.metrics.RuleMetricsRegistry;
 import org.kie.api.KieBaseConfiguration;
+import org.kie.api.builder.model.KieBaseModel;
 import org.kie.api.definition.KiePackage;
 import org.kie.api.definition.type.Role;
 import org.kie.api.definition.type.Role.Type;
 
+import static java.util.stream.Collectors.toList;
+
 import static org.drools.core.rule.Pattern.getReadAcessor;
 import static org.drools.model.DSL.*;
 import static org.drools.model.impl.NamesGenerator.generateName;
 import static org.drools.modelcompiler.ModelCompilerUtil.conditionToGroupElementType;
+import static org.drools.modelcompiler.ModelCompilerUtil.getTransitiveKieBaseModels;
+import static org.drools.modelcompiler.ModelCompilerUtil.isPackageInKieBase;
 
 public class KiePackagesBuilder {
 
+    /**
+     * The minimum number of rules of a model required to build them in parallel: below this threshold
+     * the cost of dispatching the rules to the common fork join pool is larger than the one of building them.
+     */
+    public static final int PARALLEL_BUILD_THRESHOLD = Integer.getInteger( "drools.modelcompiler.parallelBuildThreshold", 100 );
+
     private final RuleBaseConfiguration configuration;
+    private final Set<KieBaseModel> kBaseModels;
+    private final String kieBaseMetricsId;
 
     private Map<String, KiePackage> packages = new HashMap<>();
 
-    private Set<Class<?>> patternClasses = new HashSet<>();
+    private Set<Class<?>> patternClasses = ConcurrentHashMap.newKeySet();
 
     public KiePackagesBuilder( KieBaseConfiguration conf ) {
+        this( conf, null );
+    }
+
+    public KiePackagesBuilder( KieBaseConfiguration conf, KieBaseModel kBaseModel ) {
         this.configuration = ( (RuleBaseConfiguration) conf );
+        this.kBaseModels = kBaseModel != null ? getTransitiveKieBaseModels( kBaseModel ) : null;
+        this.kieBaseMetricsId = KieBaseMetricsTracker.newKieBaseId( kBaseModel != null ? kBaseModel.getName() : "defaultkiebase" );
+    }
+
+    /**
+     * The id under which the metrics of the constraints and of the rules built by this builder are registered,
+     * to be bound to the KieBase created from them.
+     */
+    public String getKieBaseMetricsId() {
+        return kieBaseMetricsId;
     }
 
     public void addModel( Model model ) {
+        Object event = FlightRecorderEvents.beginBuildPhase( FlightRecorderEvents.ADD_MODEL, model.getClass().getName() );
+        try {
+            compileModel( model );
+        } finally {
+            FlightRecorderEvents.endBuildPhase( event );
+        }
+    }
+
+    private void compileModel( Model model ) {
         for (Global global : model.getGlobals()) {
+            if ( !isInKieBase( global.getPackage() ) ) {
+                continue;
+            }
             KnowledgePackageImpl pkg = (KnowledgePackageImpl) packages.computeIfAbsent( global.getPackage(), this::createKiePackage );
             pkg.addGlobal( global.getName(), global.getType().asClass() );
         }
         for (Query query : model.getQueries()) {
+            if ( !isInKieBase( query.getPackage() ) ) {
+                continue;
+            }
             KnowledgePackageImpl pkg = (KnowledgePackageImpl) packages.computeIfAbsent( query.getPackage(), this::createKiePackage );
             pkg.addRule( compileQuery( pkg, query ) );
         }
-        for (Rule rule : model.getRules()) {
-            KnowledgePackageImpl pkg = (KnowledgePackageImpl) packages.computeIfAbsent( rule.getPackage(), this::createKiePackage );
-            pkg.addRule( compileRule( pkg, rule ) );
+
+        List<Supplier<Rule>> rules = new ArrayList<>();
+        if (model instanceof LazyModel) {
+            for (RuleSupplier ruleSupplier : ( (LazyModel) model ).getRuleSuppliers()) {
+                if ( isInKieBase( ruleSupplier.getPackage() ) ) {
+                    rules.add( ruleSupplier );
+                }
+            }
+        } else {
+            for (Rule rule : model.getRules()) {
+                rules.add( () -> rule );
+            }
+        }
+
+        if (rules.size() < PARALLEL_BUILD_THRESHOLD) {
+            rules.forEach( rule -> addRule( rule.get(), getFingerprint( rule ) ) );
+        } else {
+            addRulesInParallel( rules );
         }
     }
 
+    private void addRule( Rule rule, String fingerprint ) {
+        KnowledgePackageImpl pkg = (KnowledgePackageImpl) packages.computeIfAbsent( rule.getPackage(), this::createKiePackage );
+        pkg.addRule( compileRule( pkg, rule, fingerprint ) );
+    }
+
+    private static String getFingerprint( Supplier<Rule> ruleSupplier ) {
+        return ruleSupplier instanceof RuleSupplier ? ( (RuleSupplier) ruleSupplier ).getFingerprint() : null;
+    }
+
+    private void addRulesInParallel( List<Supplier<Rule>> ruleSuppliers ) {
+        List<Rule> rules = ruleSuppliers.parallelStream().map( Supplier::get ).collect( toList() );
+
+        // the packages are created upfront, so the compilation only reads the packages map
+        rules.forEach( rule -> packages.computeIfAbsent( rule.getPackage(), this::createKiePackage ) );
+
+        List<RuleImpl> ruleImpls = IntStream.range( 0, rules.size() ).parallel()
+                                            .mapToObj( i -> compileRule( (KnowledgePackageImpl) packages.get( rules.get( i ).getPackage() ),
+                                                                         rules.get( i ), getFingerprint( ruleSuppliers.get( i ) ) ) )
+                                            .collect( toList() );
+
+        // the compiled rules are added to their packages in the same order of the model, as in the sequential case
+        for (int i = 0; i < rules.size(); i++) {
+            ( (KnowledgePackageImpl) packages.get( rules.get( i ).getPackage() ) ).addRule( ruleImpls.get( i ) );
+        }
+    }
+
+    private boolean isInKieBase( String pkgName ) {
+        return kBaseModels == null || isPackageInKieBase( kBaseModels, pkgName );
+    }
+
     private KnowledgePackageImpl createKiePackage(String name) {
         KnowledgePackageImpl kpkg = new KnowledgePackageImpl( name );
         kpkg.setClassFieldAccessorCache(new ClassFieldAccessorCache( configuration.getClassLoader() ) );
@@ -136,16 +232,31 @@ public class KiePackagesBuilder {
         return patternClasses;
     }
 
-    private RuleImpl compileRule( KnowledgePackageImpl pkg, Rule rule ) {
+    public Collection<Class<?>> getImmutableClasses() {
+        return patternClasses.stream().filter( this::isImmutable ).collect( toList() );
+    }
+
+    public void registerTypes( Collection<Class<?>> patternClasses, Collection<Class<?>> eventClasses, Collection<Class<?>> immutableClasses ) {
+        Set<Class<?>> events = new HashSet<>( eventClasses );
+        Set<Class<?>> immutables = new HashSet<>( immutableClasses );
+        for (Class<?> patternClass : patternClasses) {
+            objectTypeCache.put( patternClass, new ClassObjectType( patternClass, events.contains( patternClass ) ) );
+            immutabilityCache.put( patternClass, immutables.contains( patternClass ) );
+        }
+    }
+
+    private RuleImpl compileRule( KnowledgePackageImpl pkg, Rule rule, String fingerprint ) {
         RuleImpl ruleImpl = new RuleImpl( rule.getName() );
         ruleImpl.setPackage( rule.getPackage() );
         if (rule.getUnit() != null) {
             ruleImpl.setRuleUnitClassName( rule.getUnit() );
-            pkg.getRuleUnitRegistry().getRuleUnitFor( ruleImpl );
+            synchronized (pkg) {
+                pkg.getRuleUnitRegistry().getRuleUnitFor( ruleImpl );
+            }
         }
         RuleContext ctx = new RuleContext( pkg, ruleImpl );
         populateLHS( ctx, pkg, rule.getView() );
-        processConsequence( ctx, rule.getConsequence() );
+        processConsequence( ctx, rule.getConsequence(), fingerprint );
         return ruleImpl;
     }
 
@@ -181,8 +292,12 @@ public class KiePackagesBuilder {
         queryImpl.setParameters( declarations );
     }
 
-    private void processConsequence( RuleContext ctx, Consequence consequence ) {
-        ctx.getRule().setConsequence( new LambdaConsequence( consequence, ctx ) );
+    private void processConsequence( RuleContext ctx, Consequence consequence, String fingerprint ) {
+        // checked here, so the consequences of a KieBase built without metrics have no overhead for them
+        ctx.getRule().setConsequence( RuleMetricsRegistry.get().isEnabled() ?
+                                      new MeteredLambdaConsequence( consequence, ctx, fingerprint,
+                                                                    RuleMetricsRegistry.get().getMetrics( kieBaseMetricsId, ctx.getRule().getFullyQualifiedName() ) ) :
+                                      new LambdaConsequence( consequence, ctx, fingerprint ) );
 
         Variable[] consequenceVars = consequence.getDeclarations();
         String[] requiredDeclarations = new String[consequenceVars.length];
@@ -220,7 +335,12 @@ public class KiePackagesBuilder {
             }
         }
         try {
-            return declarationOf( type( pkg.getTypeResolver().resolveType( unitClassName ) ), entryPoint( RuleUnitUtil.RULE_UNIT_ENTRY_POINT ) );
+            Class<?> unitClass;
+            // the type resolver caches the resolved classes in plain maps, so it can't be used concurrently by the parallel build
+            synchronized (pkg) {
+                unitClass = pkg.getTypeResolver().resolveType( unitClassName );
+            }
+            return declarationOf( type( unitClass ), entryPoint( RuleUnitUtil.RULE_UNIT_ENTRY_POINT ) );
         } catch (ClassNotFoundException e) {
             throw new RuntimeException( e );
         }
@@ -359,8 +479,10 @@ public class KiePackagesBuilder {
                     pattern.setSource( new EntryPointId( ( (EntryPoint) decl.getSource() ).getName() ) );
                 } else if ( decl.getSource() instanceof WindowReference ) {
                     WindowReference<?> window = (WindowReference) decl.getSource();
-                    if ( !ctx.getPkg().getWindowDeclarations().containsKey( window.getName() ) ) {
-                        createWindowReference( ctx, window );
+                    synchronized (ctx.getPkg()) {
+                        if ( !ctx.getPkg().getWindowDeclarations().containsKey( window.getName() ) ) {
+                            createWindowReference( ctx, window );
+                        }
                     }
                     pattern.setSource( new org.drools.core.rule.WindowReference( window.getName() ) );
                 } else {
@@ -383,7 +505,7 @@ public class KiePackagesBuilder {
         for ( Predicate1<T> predicate : window.getPredicates()) {
             SingleConstraint singleConstraint = new SingleConstraint1<>( generateName("expr"), variable, predicate );
             ConstraintEvaluator constraintEvaluator = new ConstraintEvaluator( windowPattern, singleConstraint );
-            windowPattern.addConstraint( new LambdaConstraint( constraintEvaluator ) );
+            windowPattern.addConstraint( createLambdaConstraint( constraintEvaluator ) );
         }
         windowPattern.addBehavior( createWindow( window ) );
         ctx.getPkg().addWindowDeclaration(windowDeclaration);
@@ -399,6 +521,13 @@ public class KiePackagesBuilder {
         throw new IllegalArgumentException( "Unknown window type: " + window.getType() );
     }
 
+    private LambdaConstraint createLambdaConstraint( ConstraintEvaluator constraintEvaluator ) {
+        // checked here, so the constraints of a KieBase built without metrics have no overhead for them
+        return ConstraintMetricsRegistry.get().isEnabled() ?
+               new MeteredLambdaConstraint( constraintEvaluator, ConstraintMetricsRegistry.get().getMetrics( kieBaseMetricsId, constraintEvaluator.getId() ) ) :
+               new LambdaConstraint( constraintEvaluator );
+    }
+
     private void addConstraintsToPattern( RuleContext ctx, Pattern pattern, org.drools.model.Pattern modelPattern, Constraint constraint ) {
         if (constraint.getType() == Constraint.Type.SINGLE) {
             SingleConstraint singleConstraint = (SingleConstraint) constraint;
@@ -408,7 +537,7 @@ public class KiePackagesBuilder {
                 ConstraintEvaluator constraintEvaluator = singleConstraint.isTemporal() ?
                                                           new TemporalConstraintEvaluator( declarations, pattern, singleConstraint ) :
                                                           new ConstraintEvaluator( declarations, pattern, singleConstraint );
-                pattern.addConstraint( new LambdaConstraint( constraintEvaluator ) );
+                pattern.addConstraint( createLambdaConstraint( constraintEvaluator ) );
                 addFieldsToPatternWatchlist( pattern, singleConstraint.getReactiveProps() );
             }
 
@@ -420,7 +549,7 @@ public class KiePackagesBuilder {
     }
 
     private void addFieldsToPatternWatchlist( Pattern pattern, String[] fields ) {
-        if (fields != null && fields.length > 0) {
+        if (fields != null && fields.length > 0 && !isImmutable( ( (ClassObjectType) pattern.getObjectType() ).getClassType() )) {
             Collection<String> watchlist = pattern.getListenedProperties();
             if ( watchlist == null ) {
                 watchlist = new HashSet<>( );
@@ -450,7 +579,7 @@ public class KiePackagesBuilder {
         return packages.values();
     }
 
-    private Map<Class<?>, ClassObjectType> objectTypeCache = new HashMap<>();
+    private Map<Class<?>, ClassObjectType> objectTypeCache = new ConcurrentHashMap<>();
     private ClassObjectType getObjectType( Class<?> patternClass ) {
         return objectTypeCache.computeIfAbsent( patternClass, c -> new ClassObjectType( c, isEvent( c ) ) );
     }
@@ -459,4 +588,9 @@ public class KiePackagesBuilder {
         Role role = patternClass.getAnnotation( Role.class );
         return role != null && role.value() == Type.EVENT;
     }
+
+    private Map<Class<?>, Boolean> immutabilityCache = new ConcurrentHashMap<>();
+    private boolean isImmutable( Class<?> patternClass ) {
+        return immutabilityCache.computeIfAbsent( patternClass, c -> c.isAnnotationPresent( Immutable.class ) );
+    }
 }
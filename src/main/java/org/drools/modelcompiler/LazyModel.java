@@ -0,0 +1,31 @@
+/*
+ * Copyright 2005 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.modelcompiler;
+
+import java.util.List;
+
+import org.drools.model.Model;
+
+/**
+ * A Model whose rules are built only when they are actually compiled into a KieBase.
+ * The KiePackagesBuilder uses the metadata of the suppliers to skip the rules that
+ * don't belong to the KieBase being built without running their DSL.
+ */
+public interface LazyModel extends Model {
+
+    List<RuleSupplier> getRuleSuppliers();
+}
@@ -16,8 +16,15 @@
 
 package org.drools.modelcompiler;
 
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.drools.compiler.kie.builder.impl.KieBuilderImpl;
+import org.drools.compiler.kproject.models.KieBaseModelImpl;
 import org.drools.core.rule.GroupElement;
 import org.drools.model.Condition;
+import org.kie.api.builder.model.KieBaseModel;
 
 public class ModelCompilerUtil {
 
@@ -32,4 +39,48 @@ public class ModelCompilerUtil {
         }
         throw new UnsupportedOperationException();
     }
+
+    /**
+     * Checks if a package belongs to a KieBase, either directly or through the KieBases it transitively includes
+     * among the ones of its own kmodule.
+     */
+    public static boolean isPackageInKieBase( KieBaseModel kBaseModel, String pkgName ) {
+        return isPackageInKieBase( getTransitiveKieBaseModels( kBaseModel ), pkgName );
+    }
+
+    public static boolean isPackageInKieBase( Set<KieBaseModel> kBaseModels, String pkgName ) {
+        return kBaseModels.stream().anyMatch( kBaseModel -> kBaseModel.getPackages().isEmpty() || KieBuilderImpl.isPackageInKieBase( kBaseModel, pkgName ) );
+    }
+
+    /**
+     * Returns the given KieBase together with all the ones it transitively includes among the ones of its own kmodule.
+     */
+    public static Set<KieBaseModel> getTransitiveKieBaseModels( KieBaseModel kBaseModel ) {
+        return getTransitiveKieBaseModels( kBaseModel, include -> getKieBaseModelInSameModule( kBaseModel, include ) );
+    }
+
+    /**
+     * Returns the given KieBase together with all the ones it transitively includes, resolving the names of the
+     * included KieBases with the given resolver. The includes that can't be resolved are skipped.
+     */
+    public static Set<KieBaseModel> getTransitiveKieBaseModels( KieBaseModel kBaseModel, Function<String, KieBaseModel> kBaseModelResolver ) {
+        Set<KieBaseModel> kBaseModels = new LinkedHashSet<>();
+        addTransitiveKieBaseModels( kBaseModels, kBaseModel, kBaseModelResolver );
+        return kBaseModels;
+    }
+
+    private static void addTransitiveKieBaseModels( Set<KieBaseModel> kBaseModels, KieBaseModel kBaseModel, Function<String, KieBaseModel> kBaseModelResolver ) {
+        if ( kBaseModel == null || !kBaseModels.add( kBaseModel ) ) {
+            return;
+        }
+        for (String include : kBaseModel.getIncludes()) {
+            addTransitiveKieBaseModels( kBaseModels, kBaseModelResolver.apply( include ), kBaseModelResolver );
+        }
+    }
+
+    private static KieBaseModel getKieBaseModelInSameModule( KieBaseModel kBaseModel, String kBaseName ) {
+        return kBaseModel instanceof KieBaseModelImpl && ( (KieBaseModelImpl) kBaseModel ).getKModule() != null ?
+                ( (KieBaseModelImpl) kBaseModel ).getKModule().getKieBaseModels().get( kBaseName ) :
+                null;
+    }
 }
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2005 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.modelcompiler;
+
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.drools.model.Rule;
+
+public class RuleSupplier implements Supplier<Rule> {
+
+    private final String name;
+    private final String pkg;
+    private final String unit;
+    private final String fingerprint;
+    private final Supplier<Rule> ruleSupplier;
+
+    private Rule rule;
+
+    public RuleSupplier( String name, String pkg, String unit, Supplier<Rule> ruleSupplier ) {
+        this( name, pkg, unit, null, ruleSupplier );
+    }
+
+    public RuleSupplier( String name, String pkg, String unit, String fingerprint, Supplier<Rule> ruleSupplier ) {
+        this.name = name;
+        this.pkg = pkg;
+        this.unit = unit;
+        this.fingerprint = fingerprint;
+        this.ruleSupplier = ruleSupplier;
+    }
+
+    public static RuleSupplier ruleSupplier( String name, String pkg, String unit, Supplier<Rule> ruleSupplier ) {
+        return new RuleSupplier( name, pkg, unit, ruleSupplier );
+    }
+
+    public static RuleSupplier ruleSupplier( String name, String pkg, String unit, String fingerprint, Supplier<Rule> ruleSupplier ) {
+        return new RuleSupplier( name, pkg, unit, fingerprint, ruleSupplier );
+    }
+
+    public static List<Rule> getRules( List<RuleSupplier> ruleSuppliers ) {
+        return ruleSuppliers.stream().map( RuleSupplier::get ).collect( Collectors.toList() );
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getPackage() {
+        return pkg;
+    }
+
+    public String getUnit() {
+        return unit;
+    }
+
+    /**
+     * A digest of the whole definition of the rule, if known: two rules with the same fingerprint
+     * are the same rule, regardless of the kjar version they come from.
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    @Override
+    public synchronized Rule get() {
+        if (rule == null) {
+            rule = ruleSupplier.get();
+        }
+        return rule;
+    }
+}
@@ -16,9 +16,14 @@
 
 package org.drools.modelcompiler.builder;
 
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.drools.compiler.commons.jci.compilers.CompilationResult;
 import org.drools.compiler.commons.jci.compilers.EclipseJavaCompiler;
@@ -30,15 +35,34 @@ import org.drools.compiler.kie.builder.impl.InternalKieModule;
 import org.drools.compiler.kie.builder.impl.KieModuleKieProject;
 import org.drools.compiler.kproject.models.KieBaseModelImpl;
 import org.drools.compiler.rule.builder.dialect.java.JavaDialectConfiguration;
+import org.drools.javaparser.JavaParser;
+import org.drools.javaparser.ast.CompilationUnit;
+import org.drools.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import org.drools.javaparser.printer.PrettyPrinter;
+import org.drools.javaparser.printer.PrettyPrinterConfiguration;
+import org.drools.modelcompiler.CanonicalModelRegistry;
+import org.drools.modelcompiler.Immutable;
+import org.drools.modelcompiler.builder.generator.ChangeTrackingGenerator;
+import org.drools.modelcompiler.jfr.FlightRecorderEvents;
+import org.kie.api.builder.model.KieBaseModel;
+import org.kie.api.definition.type.Role;
 import org.kie.internal.builder.KnowledgeBuilder;
 
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+
+import static org.drools.modelcompiler.CanonicalKieModule.MODEL_REGISTRY_FILE_NAME;
+import static org.drools.modelcompiler.CanonicalKieModule.MODEL_REGISTRY_PACKAGE;
 import static org.drools.modelcompiler.CanonicalKieModule.PACKAGE_LIST;
 import static org.drools.modelcompiler.CanonicalKieModule.RULES_FILE_NAME;
 import static org.drools.modelcompiler.CanonicalKieModule.VARIABLES_FILE_NAME;
+import static org.drools.modelcompiler.ModelCompilerUtil.getTransitiveKieBaseModels;
+import static org.drools.modelcompiler.ModelCompilerUtil.isPackageInKieBase;
+import static org.drools.modelcompiler.builder.generator.ChangeTrackingGenerator.getChangeTrackedClassName;
 
 public class CanonicalModelKieProject extends KieModuleKieProject {
 
-    private ModelBuilderImpl modelBuilder;
+    private final List<ModelBuilderImpl> modelBuilders = new ArrayList<>();
 
     public CanonicalModelKieProject( InternalKieModule kieModule, ClassLoader classLoader ) {
         super( kieModule, classLoader );
@@ -46,7 +70,8 @@ public class CanonicalModelKieProject extends KieModuleKieProject {
 
     @Override
     protected KnowledgeBuilder createKnowledgeBuilder( KieBaseModelImpl kBaseModel, AbstractKieModule kModule ) {
-        modelBuilder = new ModelBuilderImpl();
+        ModelBuilderImpl modelBuilder = new ModelBuilderImpl();
+        modelBuilders.add( modelBuilder );
         return modelBuilder;
     }
 
@@ -55,10 +80,17 @@ public class CanonicalModelKieProject extends KieModuleKieProject {
         MemoryFileSystem srcMfs = new MemoryFileSystem();
 
         JavaCompiler javaCompiler = createCompiler();
-        CompilationResult res = javaCompiler.compile( writeModel( srcMfs, trgMfs ),
-                                                      srcMfs,
-                                                      trgMfs,
-                                                      getClassLoader() );
+        String[] sources = writeModel( srcMfs, trgMfs );
+        Object event = FlightRecorderEvents.beginBuildPhase( FlightRecorderEvents.COMPILE_JAVA, sources.length + " sources" );
+        CompilationResult res;
+        try {
+            res = javaCompiler.compile( sources,
+                                        srcMfs,
+                                        trgMfs,
+                                        getClassLoader() );
+        } finally {
+            FlightRecorderEvents.endBuildPhase( event );
+        }
 
         if (res.getErrors().length != 0) {
             throw new RuntimeException( "Compilation errors: " + Arrays.toString( res.getErrors() ));
@@ -69,7 +101,8 @@ public class CanonicalModelKieProject extends KieModuleKieProject {
         List<String> sources = new ArrayList<>();
         StringBuilder pkgNames = new StringBuilder();
 
-        for (PackageModel pkgModel : modelBuilder.getPackageModels()) {
+        List<PackageModel> packageModels = getPackageModels();
+        for (PackageModel pkgModel : packageModels) {
             String pkgName = pkgModel.getName();
             pkgNames.append( pkgName ).append( "\n" );
             String folderName = pkgName.replace( '.', '/' );
@@ -87,10 +120,125 @@ public class CanonicalModelKieProject extends KieModuleKieProject {
             sources.add(rulesSourceName);
         }
 
+        if (ChangeTrackingGenerator.isChangeTrackingEnabled()) {
+            packageModels.stream()
+                        .flatMap( pkgModel -> pkgModel.getPatternClasses().stream() )
+                        .distinct()
+                        .filter( ChangeTrackingGenerator::isTrackable )
+                        .forEach( patternClass -> {
+                            String trackedSourceName = "src/main/java/" + getChangeTrackedClassName( patternClass ).replace( '.', '/' ) + ".java";
+                            srcMfs.write(trackedSourceName, ChangeTrackingGenerator.generateSource( patternClass ).getBytes());
+                            sources.add(trackedSourceName);
+                        } );
+        }
+
+        String registrySourceName = "src/main/java/" + MODEL_REGISTRY_PACKAGE.replace( '.', '/' ) + "/" + MODEL_REGISTRY_FILE_NAME + ".java";
+        srcMfs.write(registrySourceName, getModelRegistrySource( packageModels ).getBytes());
+        sources.add(registrySourceName);
+
         trgMfs.write( PACKAGE_LIST, pkgNames.toString().getBytes() );
         return sources.toArray(new String[sources.size()]);
     }
 
+    private List<PackageModel> getPackageModels() {
+        // each KieBase is built by its own builder, so a package belonging to more KieBases, also through
+        // their includes, is generated only once
+        Map<String, PackageModel> packageModels = new LinkedHashMap<>();
+        for (ModelBuilderImpl modelBuilder : modelBuilders) {
+            modelBuilder.getPackageModels().forEach( pkgModel -> packageModels.putIfAbsent( pkgModel.getName(), pkgModel ) );
+        }
+        return new ArrayList<>( packageModels.values() );
+    }
+
+    private String getModelRegistrySource( List<PackageModel> packageModels ) {
+        CompilationUnit cu = new CompilationUnit();
+        cu.setPackageDeclaration( MODEL_REGISTRY_PACKAGE );
+        cu.addImport(JavaParser.parseImport("import java.util.*;"));
+        cu.addImport(JavaParser.parseImport("import org.drools.model.Model;"));
+
+        ClassOrInterfaceDeclaration registryClass = cu.addClass( MODEL_REGISTRY_FILE_NAME );
+        registryClass.addImplementedType( CanonicalModelRegistry.class );
+
+        registryClass.addMember( JavaParser.parseBodyDeclaration(
+                "    @Override\n" +
+                "    public List<Model> getModels() {\n" +
+                "        return " + toModelsList( packageModels ) + ";\n" +
+                "    }\n" ) );
+
+        StringBuilder kBaseCases = new StringBuilder();
+        for (String kBaseName : getKieBaseNames()) {
+            // the packages of the included KieBases are part of the including one
+            Set<KieBaseModel> kBaseModels = getTransitiveKieBaseModels( getKieBaseModel( kBaseName ), this::getKieBaseModel );
+            List<PackageModel> kBasePackageModels = packageModels.stream()
+                                                                 .filter( pkgModel -> isPackageInKieBase( kBaseModels, pkgModel.getName() ) )
+                                                                 .collect( toList() );
+            kBaseCases.append( "            case \"" ).append( kBaseName ).append( "\": return " )
+                      .append( toModelsList( kBasePackageModels ) ).append( ";\n" );
+        }
+        registryClass.addMember( JavaParser.parseBodyDeclaration(
+                "    @Override\n" +
+                "    public List<Model> getModelsForKieBase( String kBaseName ) {\n" +
+                "        switch (kBaseName) {\n" +
+                kBaseCases +
+                "            default: return getModels();\n" +
+                "        }\n" +
+                "    }\n" ) );
+
+        List<Class<?>> patternClasses = packageModels.stream()
+                                                     .flatMap( pkgModel -> pkgModel.getPatternClasses().stream() )
+                                                     .filter( CanonicalModelKieProject::isAccessible )
+                                                     .distinct()
+                                                     .sorted( Comparator.comparing( Class::getName ) )
+                                                     .collect( toList() );
+        registryClass.addMember( JavaParser.parseBodyDeclaration(
+                "    @Override\n" +
+                "    public Collection<Class<?>> getPatternClasses() {\n" +
+                "        return " + toClassesList( patternClasses ) + ";\n" +
+                "    }\n" ) );
+
+        List<Class<?>> eventClasses = patternClasses.stream().filter( CanonicalModelKieProject::isEvent ).collect( toList() );
+        registryClass.addMember( JavaParser.parseBodyDeclaration(
+                "    @Override\n" +
+                "    public Collection<Class<?>> getEventClasses() {\n" +
+                "        return " + toClassesList( eventClasses ) + ";\n" +
+                "    }\n" ) );
+
+        List<Class<?>> immutableClasses = patternClasses.stream().filter( c -> c.isAnnotationPresent( Immutable.class ) ).collect( toList() );
+        registryClass.addMember( JavaParser.parseBodyDeclaration(
+                "    @Override\n" +
+                "    public Collection<Class<?>> getImmutableClasses() {\n" +
+                "        return " + toClassesList( immutableClasses ) + ";\n" +
+                "    }\n" ) );
+
+        return new PrettyPrinter( new PrettyPrinterConfiguration() ).print( cu );
+    }
+
+    private static String toModelsList( List<PackageModel> packageModels ) {
+        return packageModels.stream()
+                            .map( pkgModel -> "new " + pkgModel.getName() + "." + RULES_FILE_NAME + "()" )
+                            .collect( joining( ", ", "Arrays.<Model>asList( ", " )" ) );
+    }
+
+    private static String toClassesList( List<Class<?>> classes ) {
+        return classes.stream()
+                      .map( c -> c.getCanonicalName() + ".class" )
+                      .collect( joining( ", ", "Arrays.<Class<?>>asList( ", " )" ) );
+    }
+
+    private static boolean isEvent( Class<?> clazz ) {
+        Role role = clazz.getAnnotation( Role.class );
+        return role != null && role.value() == Role.Type.EVENT;
+    }
+
+    private static boolean isAccessible( Class<?> clazz ) {
+        for (Class<?> c = clazz; c != null; c = c.getEnclosingClass()) {
+            if ( !Modifier.isPublic( c.getModifiers() ) || c.getCanonicalName() == null ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private JavaCompiler createCompiler() {
         EclipseJavaCompiler javaCompiler = (EclipseJavaCompiler) JavaCompilerFactory.getInstance().loadCompiler( JavaDialectConfiguration.CompilerType.ECLIPSE, "1.8" );
         javaCompiler.setPrefix( "src/main/java/" );
@@ -16,18 +16,40 @@
 
 package org.drools.modelcompiler.builder;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import org.drools.compiler.kproject.models.KieBaseModelImpl;
 import org.drools.core.RuleBaseConfiguration;
+import org.drools.core.definitions.InternalKnowledgePackage;
+import org.drools.core.definitions.impl.KnowledgePackageImpl;
+import org.drools.core.definitions.rule.impl.RuleImpl;
 import org.drools.core.impl.InternalKnowledgeBase;
 import org.drools.core.impl.KnowledgeBaseFactory;
+import org.drools.core.rule.Pattern;
+import org.drools.core.rule.RuleConditionElement;
+import org.drools.core.spi.Constraint;
+import org.drools.core.spi.ObjectType;
 import org.drools.model.Model;
 import org.drools.modelcompiler.KiePackagesBuilder;
+import org.drools.modelcompiler.consequence.LambdaConsequence;
+import org.drools.modelcompiler.consequence.MeteredLambdaConsequence;
+import org.drools.modelcompiler.constraints.MeteredLambdaConstraint;
+import org.drools.modelcompiler.metrics.ConstraintMetrics;
+import org.drools.modelcompiler.metrics.ConstraintMetricsRegistry;
+import org.drools.modelcompiler.metrics.KieBaseMetricsTracker;
+import org.drools.modelcompiler.metrics.RuleMetrics;
+import org.drools.modelcompiler.metrics.RuleMetricsRegistry;
 import org.kie.api.KieBaseConfiguration;
 import org.kie.api.KieServices;
 import org.kie.api.conf.KieBaseOption;
 import org.kie.api.definition.KiePackage;
+import org.kie.api.definition.rule.Rule;
+
+import static java.util.stream.Collectors.toSet;
 
 public class KieBaseBuilder {
 
@@ -52,17 +74,145 @@ public class KieBaseBuilder {
 
         this.kBaseName = kBaseModel != null ? kBaseModel.getName() : "defaultkiebase";
         this.conf = conf;
-        this.builder = new KiePackagesBuilder(conf);
+        this.builder = new KiePackagesBuilder(conf, kBaseModel);
     }
 
     public InternalKnowledgeBase createKieBase() {
         Collection<KiePackage> pkgs = builder.getKnowledgePackages();
         InternalKnowledgeBase kBase = KnowledgeBaseFactory.newKnowledgeBase( kBaseName, conf );
-        builder.getPatternClasses().forEach( kBase::getOrCreateExactTypeDeclaration );
+        registerPatternClasses( kBase );
+        kBase.addPackages( pkgs );
+        KieBaseMetricsTracker.bind( builder.getKieBaseMetricsId(), kBase );
+        removeUnusedMetrics( kBase );
+        return kBase;
+    }
+
+    private static void removeUnusedMetrics( InternalKnowledgeBase kBase ) {
+        // the unchanged rules discarded above registered their metrics while being built, as the removed rules did
+        ConstraintMetricsRegistry constraintMetricsRegistry = ConstraintMetricsRegistry.get();
+        RuleMetricsRegistry ruleMetricsRegistry = RuleMetricsRegistry.get();
+        if ( constraintMetricsRegistry.getConstraintMetrics( kBase ).isEmpty() && ruleMetricsRegistry.getRuleMetrics( kBase ).isEmpty() ) {
+            return;
+        }
+        Set<ConstraintMetrics> usedConstraintMetrics = new HashSet<>();
+        Set<RuleMetrics> usedRuleMetrics = new HashSet<>();
+        for (KiePackage kiePackage : kBase.getKiePackages()) {
+            for (Rule rule : kiePackage.getRules()) {
+                RuleImpl ruleImpl = (RuleImpl) rule;
+                collectConstraintMetrics( ruleImpl.getLhs(), usedConstraintMetrics );
+                if (ruleImpl.getConsequence() instanceof MeteredLambdaConsequence) {
+                    usedRuleMetrics.add( ( (MeteredLambdaConsequence) ruleImpl.getConsequence() ).getMetrics() );
+                }
+            }
+        }
+        constraintMetricsRegistry.retainMetrics( kBase, usedConstraintMetrics );
+        ruleMetricsRegistry.retainMetrics( kBase, usedRuleMetrics );
+    }
+
+    private static void collectConstraintMetrics( RuleConditionElement rce, Set<ConstraintMetrics> metrics ) {
+        if (rce instanceof Pattern) {
+            for (Constraint constraint : ( (Pattern) rce ).getConstraints()) {
+                if (constraint instanceof MeteredLambdaConstraint) {
+                    metrics.add( ( (MeteredLambdaConstraint) constraint ).getMetrics() );
+                }
+            }
+        }
+        for (RuleConditionElement child : rce.getNestedElements()) {
+            collectConstraintMetrics( child, metrics );
+        }
+    }
+
+    /**
+     * Applies the models added to this builder to an existing KieBase instead of creating a new one, so that the
+     * KieBase ends up with the content of the models.
+     * The rules of each package contained in the models are diffed with the ones already in the KieBase, so that
+     * only the new, changed and no longer existing rules are respectively added, replaced and removed, while the
+     * unchanged rules keep their nodes and the memories of the sessions created from the KieBase.
+     * The packages of the KieBase not contained in the models anymore are removed with all their rules, queries
+     * and globals.
+     */
+    public InternalKnowledgeBase updateKieBase( InternalKnowledgeBase kBase ) {
+        registerPatternClasses( kBase );
+
+        Collection<KiePackage> newPkgs = builder.getKnowledgePackages();
+        Set<String> newPkgNames = newPkgs.stream().map( KiePackage::getName ).collect( toSet() );
+        for (KiePackage oldPkg : new ArrayList<>( kBase.getKiePackages() )) {
+            if ( !newPkgNames.contains( oldPkg.getName() ) ) {
+                kBase.removeKiePackage( oldPkg.getName() );
+            }
+        }
+
+        List<KiePackage> pkgs = new ArrayList<>();
+        for (KiePackage kiePackage : newPkgs) {
+            KnowledgePackageImpl newPkg = (KnowledgePackageImpl) kiePackage;
+            InternalKnowledgePackage oldPkg = kBase.getPackage( newPkg.getName() );
+            if (oldPkg != null) {
+                for (Rule oldRule : new ArrayList<>( oldPkg.getRules() )) {
+                    RuleImpl newRule = newPkg.getRule( oldRule.getName() );
+                    if ( newRule != null && isSameRule( (RuleImpl) oldRule, newRule ) ) {
+                        newPkg.removeRule( newRule );
+                    } else if ( ( (RuleImpl) oldRule ).isQuery() ) {
+                        kBase.removeQuery( oldPkg.getName(), oldRule.getName() );
+                    } else {
+                        kBase.removeRule( oldPkg.getName(), oldRule.getName() );
+                    }
+                }
+            }
+            pkgs.add( newPkg );
+        }
+
         kBase.addPackages( pkgs );
+        KieBaseMetricsTracker.bind( builder.getKieBaseMetricsId(), kBase );
         return kBase;
     }
 
+    private void registerPatternClasses( InternalKnowledgeBase kBase ) {
+        builder.getPatternClasses().forEach( kBase::getOrCreateExactTypeDeclaration );
+        // immutable facts are never updated, so it is useless to compute the property reactive masks for them
+        builder.getImmutableClasses().forEach( c -> kBase.getOrCreateExactTypeDeclaration( c ).setPropertyReactive( false ) );
+    }
+
+    private static boolean isSameRule( RuleImpl oldRule, RuleImpl newRule ) {
+        if ( oldRule.isQuery() || newRule.isQuery() ) {
+            return oldRule.isQuery() && newRule.isQuery() && oldRule.getLhs().equals( newRule.getLhs() );
+        }
+        if ( !(oldRule.getConsequence() instanceof LambdaConsequence) || !(newRule.getConsequence() instanceof LambdaConsequence) ) {
+            return false;
+        }
+
+        LambdaConsequence oldConsequence = (LambdaConsequence) oldRule.getConsequence();
+        LambdaConsequence newConsequence = (LambdaConsequence) newRule.getConsequence();
+        if ( oldConsequence.getRuleFingerprint() != null && newConsequence.getRuleFingerprint() != null ) {
+            // the domain classes could have been reloaded by a new version of the kjar, even if the rule didn't change
+            return oldConsequence.getRuleFingerprint().equals( newConsequence.getRuleFingerprint() ) &&
+                   getObjectTypes( oldRule.getLhs(), new HashSet<>() ).equals( getObjectTypes( newRule.getLhs(), new HashSet<>() ) );
+        }
+
+        // without fingerprints the constraints are compared through their expression ids,
+        // but the consequence can't be inspected so it has to be exactly the same
+        return oldConsequence.getModelConsequence() == newConsequence.getModelConsequence() &&
+               oldRule.getLhs().equals( newRule.getLhs() );
+    }
+
+    private static Set<ObjectType> getObjectTypes( RuleConditionElement rce, Set<ObjectType> objectTypes ) {
+        if (rce instanceof Pattern) {
+            objectTypes.add( ( (Pattern) rce ).getObjectType() );
+        }
+        for (RuleConditionElement child : rce.getNestedElements()) {
+            getObjectTypes( child, objectTypes );
+        }
+        return objectTypes;
+    }
+
+    /**
+     * Registers the pattern classes of the models, and which of them are events, when they are already known,
+     * so they don't have to be inspected while the rules are built.
+     */
+    public KieBaseBuilder registerTypes( Collection<Class<?>> patternClasses, Collection<Class<?>> eventClasses, Collection<Class<?>> immutableClasses ) {
+        builder.registerTypes( patternClasses, eventClasses, immutableClasses );
+        return this;
+    }
+
     public KieBaseBuilder addModel( Model model ) {
         builder.addModel(model);
         return this;
@@ -23,6 +23,7 @@ import java.util.stream.Collectors;
 import org.drools.compiler.builder.impl.KnowledgeBuilderImpl;
 import org.drools.compiler.compiler.PackageRegistry;
 import org.drools.compiler.lang.descr.PackageDescr;
+import org.drools.modelcompiler.jfr.FlightRecorderEvents;
 
 import static org.drools.modelcompiler.builder.generator.ModelGenerator.generateModel;
 
@@ -32,11 +33,16 @@ public class ModelBuilderImpl extends KnowledgeBuilderImpl {
 
     @Override
     protected void compileKnowledgePackages( PackageDescr packageDescr, PackageRegistry pkgRegistry ) {
-        super.compileKnowledgePackages( packageDescr, pkgRegistry );
-        List<RuleDescrImpl> collect = packageDescr.getRules().stream()
-            .map(descr -> new RuleDescrImpl(descr, pkgRegistry.getPackage().getRule(descr.getName())))
-            .collect(Collectors.toList());
-        packageModels.add( generateModel( pkgRegistry.getPackage(), collect ) );
+        Object event = FlightRecorderEvents.beginBuildPhase( FlightRecorderEvents.COMPILE_KNOWLEDGE_PACKAGES, packageDescr.getName() );
+        try {
+            super.compileKnowledgePackages( packageDescr, pkgRegistry );
+            List<RuleDescrImpl> collect = packageDescr.getRules().stream()
+                .map(descr -> new RuleDescrImpl(descr, pkgRegistry.getPackage().getRule(descr.getName())))
+                .collect(Collectors.toList());
+            packageModels.add( generateModel( pkgRegistry.getPackage(), collect ) );
+        } finally {
+            FlightRecorderEvents.endBuildPhase( event );
+        }
     }
 
     public List<PackageModel> getPackageModels() {
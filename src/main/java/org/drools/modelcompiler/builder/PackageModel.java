@@ -16,9 +16,13 @@
 
 package org.drools.modelcompiler.builder;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -26,15 +30,19 @@ import org.drools.javaparser.JavaParser;
 import org.drools.javaparser.ast.CompilationUnit;
 import org.drools.javaparser.ast.body.BodyDeclaration;
 import org.drools.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import org.drools.javaparser.ast.body.FieldDeclaration;
 import org.drools.javaparser.ast.body.InitializerDeclaration;
 import org.drools.javaparser.ast.body.MethodDeclaration;
 import org.drools.javaparser.ast.comments.JavadocComment;
 import org.drools.javaparser.ast.expr.MethodCallExpr;
 import org.drools.javaparser.ast.expr.NameExpr;
+import org.drools.javaparser.ast.expr.NullLiteralExpr;
+import org.drools.javaparser.ast.expr.StringLiteralExpr;
 import org.drools.javaparser.ast.stmt.BlockStmt;
 import org.drools.javaparser.printer.PrettyPrinter;
 import org.drools.javaparser.printer.PrettyPrinterConfiguration;
-import org.drools.model.Model;
+import org.drools.modelcompiler.LazyModel;
+import org.drools.modelcompiler.RuleSupplier;
 import org.drools.modelcompiler.builder.generator.DRLExprIdGenerator;
 
 public class PackageModel {
@@ -45,11 +53,19 @@ public class PackageModel {
 
     private Map<String, MethodDeclaration> ruleMethods = new HashMap<>();
 
+    private Map<String, String> ruleNames = new HashMap<>();
+
+    private Map<String, String> ruleUnits = new HashMap<>();
+
+    private Map<String, List<FieldDeclaration>> ruleFields = new HashMap<>();
+
+    private Set<Class<?>> patternClasses = new LinkedHashSet<>();
+
     private DRLExprIdGenerator exprIdGenerator;
 
     public PackageModel( String name ) {
         this.name = name;
-        exprIdGenerator = new DRLExprIdGenerator();
+        exprIdGenerator = new DRLExprIdGenerator( name );
     }
 
     public String getName() {
@@ -64,8 +80,22 @@ public class PackageModel {
         this.imports.addAll(imports);
     }
     
-    public void putRuleMethod(String methodName, MethodDeclaration ruleMethod) {
+    public void addPatternClasses(Collection<Class<?>> patternClasses) {
+        this.patternClasses.addAll(patternClasses);
+    }
+
+    public Set<Class<?>> getPatternClasses() {
+        return patternClasses;
+    }
+
+    public void putRuleMethod(String methodName, MethodDeclaration ruleMethod, String ruleName, String ruleUnit) {
         this.ruleMethods.put(methodName, ruleMethod);
+        this.ruleNames.put(methodName, ruleName);
+        this.ruleUnits.put(methodName, ruleUnit);
+    }
+
+    public void addRuleField(String methodName, FieldDeclaration field) {
+        this.ruleFields.computeIfAbsent(methodName, k -> new ArrayList<>()).add(field);
     }
 
     public String getVarsSource() {
@@ -84,7 +114,10 @@ public class PackageModel {
         cu.addImport(JavaParser.parseImport("import org.drools.model.*;"                   ));
         cu.addImport(JavaParser.parseImport("import static org.drools.model.DSL.*;"        ));
         cu.addImport(JavaParser.parseImport("import org.drools.model.Index.ConstraintType;"));
-        
+        cu.addImport(JavaParser.parseImport("import " + LazyModel.class.getCanonicalName() + ";"));
+        cu.addImport(JavaParser.parseImport("import " + RuleSupplier.class.getCanonicalName() + ";"));
+        cu.addImport(JavaParser.parseImport("import static " + RuleSupplier.class.getCanonicalName() + ".ruleSupplier;"));
+
         // imports from DRL:
         for ( String i : imports ) {
             if ( i.equals(name+".*") ) {
@@ -94,12 +127,12 @@ public class PackageModel {
         }
         
         ClassOrInterfaceDeclaration rulesClass = cu.addClass("Rules");
-        rulesClass.addImplementedType(Model.class);
+        rulesClass.addImplementedType(LazyModel.class);
 
         BodyDeclaration<?> getRulesMethod = JavaParser.parseBodyDeclaration(
                 "    @Override\n" +
                 "    public List<Rule> getRules() {\n" +
-                "        return rules;\n" +
+                "        return RuleSupplier.getRules( ruleSuppliers );\n" +
                 "    }\n"
                 );
         rulesClass.addMember(getRulesMethod);
@@ -124,30 +157,62 @@ public class PackageModel {
                 "    }\n");
         rulesClass.addMember(getQueriesMethod);
 
-        BodyDeclaration<?> rulesList = JavaParser.parseBodyDeclaration("List<Rule> rules = new ArrayList<>();");
-        rulesClass.addMember(rulesList);
+        BodyDeclaration<?> getRuleSuppliersMethod = JavaParser.parseBodyDeclaration(
+                "    @Override\n" +
+                "    public List<RuleSupplier> getRuleSuppliers() {\n" +
+                "        return ruleSuppliers;\n" +
+                "    }\n");
+        rulesClass.addMember(getRuleSuppliersMethod);
+
+        BodyDeclaration<?> ruleSuppliersList = JavaParser.parseBodyDeclaration("List<RuleSupplier> ruleSuppliers = new ArrayList<>();");
+        rulesClass.addMember(ruleSuppliersList);
         // end of fixed part
-        
-        // instance initializer block.
-        // add to `rules` list the result of invoking each method for rule 
-        InitializerDeclaration rulesListInitializer = new InitializerDeclaration();
-        rulesClass.addMember(rulesListInitializer);
-        BlockStmt rulesListInitializerBody = new BlockStmt();
-        rulesListInitializer.setBody(rulesListInitializerBody);
-        for ( String methodName : ruleMethods.keySet() ) {
-            NameExpr rulesFieldName = new NameExpr( "rules" );
-            MethodCallExpr add = new MethodCallExpr(rulesFieldName, "add");
-            add.addArgument( new MethodCallExpr(null, methodName) );
-            rulesListInitializerBody.addStatement( add );
-        }
-        
-        // each method per Drlx parser result
-        ruleMethods.values().forEach( rulesClass::addMember );
-        
+
         PrettyPrinterConfiguration config = new PrettyPrinterConfiguration();
         config.setColumnAlignParameters(true);
 //        config.setColumnAlignFirstMethodChain(true);
-        return new PrettyPrinter(config).print(cu);
+        PrettyPrinter printer = new PrettyPrinter(config);
+
+        // the fingerprint of each rule is the hash of its method, together with the constants it uses like the masks
+        // of the modified properties, as printed by the same printer used for the whole Rules class
+        Map<String, String> ruleFingerprints = new HashMap<>();
+        for ( Map.Entry<String, MethodDeclaration> ruleMethod : ruleMethods.entrySet() ) {
+            StringBuilder ruleMethodSource = new StringBuilder();
+            for ( FieldDeclaration field : ruleFields.getOrDefault( ruleMethod.getKey(), Collections.emptyList() ) ) {
+                ruleMethodSource.append( printer.print( field ) ).append( "\n" );
+            }
+            ruleMethodSource.append( printer.print( ruleMethod.getValue() ) );
+            ruleFingerprints.put( ruleMethod.getKey(), DRLExprIdGenerator.hash( name + ":" + ruleMethodSource ) );
+        }
+
+        // instance initializer block.
+        // add to `ruleSuppliers` list a supplier invoking the method for each rule, so the rule is built only when needed
+        InitializerDeclaration ruleSuppliersListInitializer = new InitializerDeclaration();
+        rulesClass.addMember(ruleSuppliersListInitializer);
+        BlockStmt ruleSuppliersListInitializerBody = new BlockStmt();
+        ruleSuppliersListInitializer.setBody(ruleSuppliersListInitializerBody);
+        for ( String methodName : ruleMethods.keySet() ) {
+            MethodCallExpr ruleSupplier = new MethodCallExpr(null, "ruleSupplier");
+            ruleSupplier.addArgument( new StringLiteralExpr( ruleNames.get( methodName ) ) );
+            ruleSupplier.addArgument( new StringLiteralExpr( name ) );
+            String ruleUnit = ruleUnits.get( methodName );
+            ruleSupplier.addArgument( ruleUnit != null ? new StringLiteralExpr( ruleUnit ) : new NullLiteralExpr() );
+            ruleSupplier.addArgument( new StringLiteralExpr( ruleFingerprints.get( methodName ) ) );
+            ruleSupplier.addArgument( JavaParser.parseExpression( "this::" + methodName ) );
+
+            NameExpr ruleSuppliersFieldName = new NameExpr( "ruleSuppliers" );
+            MethodCallExpr add = new MethodCallExpr(ruleSuppliersFieldName, "add");
+            add.addArgument( ruleSupplier );
+            ruleSuppliersListInitializerBody.addStatement( add );
+        }
+
+        // each method per Drlx parser result, preceded by the constants it uses
+        for ( Map.Entry<String, MethodDeclaration> ruleMethod : ruleMethods.entrySet() ) {
+            ruleFields.getOrDefault( ruleMethod.getKey(), Collections.emptyList() ).forEach( rulesClass::addMember );
+            rulesClass.addMember( ruleMethod.getValue() );
+        }
+
+        return printer.print(cu);
     }
 
     public void print() {
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2005 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.modelcompiler.builder.generator;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import org.drools.core.util.ClassUtils;
+import org.drools.javaparser.JavaParser;
+import org.drools.javaparser.ast.CompilationUnit;
+import org.drools.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import org.drools.javaparser.printer.PrettyPrinter;
+import org.drools.javaparser.printer.PrettyPrinterConfiguration;
+import org.drools.modelcompiler.ChangeTracked;
+import org.drools.modelcompiler.Immutable;
+
+/**
+ * Generates a subclass of a pattern class overriding all its setters in order to record the modified properties.
+ * Inserting instances of the subclass in place of the original class allows to update them with the exact
+ * set of modified properties through {@link ChangeTracked#update}.
+ * Only the changes made through the setters are tracked: the state changed by any other method, or directly on
+ * the fields, is not recorded, so it must be propagated with a plain update. For the same reason a class having
+ * a final or non-public setter, which the subclass couldn't override, is not trackable at all.
+ */
+public class ChangeTrackingGenerator {
+
+    /**
+     * The system property enabling the generation of the change tracking subclasses of the pattern classes
+     * when a kjar is built. It is read at each build.
+     */
+    public static final String GENERATE_CHANGE_TRACKING_PROPERTY = "drools.modelcompiler.generateChangeTracking";
+
+    public static boolean isChangeTrackingEnabled() {
+        return Boolean.getBoolean( GENERATE_CHANGE_TRACKING_PROPERTY );
+    }
+
+    public static final String CHANGE_TRACKED_SUFFIX = "ChangeTracked";
+
+    public static String getChangeTrackedClassName( Class<?> clazz ) {
+        return clazz.getName() + CHANGE_TRACKED_SUFFIX;
+    }
+
+    public static boolean isTrackable( Class<?> clazz ) {
+        int modifiers = clazz.getModifiers();
+        return Modifier.isPublic( modifiers ) && !Modifier.isFinal( modifiers ) && !Modifier.isAbstract( modifiers ) &&
+               !clazz.isInterface() && !clazz.isArray() && !clazz.isPrimitive() &&
+               clazz.getEnclosingClass() == null && clazz.getPackage() != null &&
+               !clazz.getName().startsWith( "java." ) && !ChangeTracked.class.isAssignableFrom( clazz ) &&
+               !clazz.isAnnotationPresent( Immutable.class ) &&
+               hasAccessibleConstructor( clazz ) && hasOnlyOverridableSetters( clazz );
+    }
+
+    private static boolean hasOnlyOverridableSetters( Class<?> clazz ) {
+        for (Class<?> c = clazz; c != Object.class; c = c.getSuperclass()) {
+            for (Method method : c.getDeclaredMethods()) {
+                int modifiers = method.getModifiers();
+                if ( isSetter( method ) && ( Modifier.isFinal( modifiers ) || !Modifier.isPublic( modifiers ) ) ) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasAccessibleConstructor( Class<?> clazz ) {
+        for (Constructor<?> constructor : clazz.getDeclaredConstructors()) {
+            if ( isAccessible( constructor.getModifiers() ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static String generateSource( Class<?> clazz ) {
+        CompilationUnit cu = new CompilationUnit();
+        cu.setPackageDeclaration( clazz.getPackage().getName() );
+
+        ClassOrInterfaceDeclaration trackedClass = cu.addClass( clazz.getSimpleName() + CHANGE_TRACKED_SUFFIX );
+        trackedClass.addExtendedType( clazz.getCanonicalName() );
+        trackedClass.addImplementedType( ChangeTracked.class );
+
+        trackedClass.addMember( JavaParser.parseBodyDeclaration(
+                "private final transient java.util.Set<String> modifiedProperties = new java.util.LinkedHashSet<>();" ) );
+
+        for (Constructor<?> constructor : clazz.getDeclaredConstructors()) {
+            if ( isAccessible( constructor.getModifiers() ) ) {
+                trackedClass.addMember( JavaParser.parseBodyDeclaration( generateConstructor( trackedClass.getNameAsString(), constructor ) ) );
+            }
+        }
+
+        for (Method method : clazz.getMethods()) {
+            String property = getSetProperty( method );
+            if ( property != null ) {
+                trackedClass.addMember( JavaParser.parseBodyDeclaration( generateSetter( method, property ) ) );
+            }
+        }
+
+        trackedClass.addMember( JavaParser.parseBodyDeclaration(
+                "    @Override\n" +
+                "    public String[] getModifiedProperties() {\n" +
+                "        return modifiedProperties.toArray( new String[modifiedProperties.size()] );\n" +
+                "    }\n" ) );
+        trackedClass.addMember( JavaParser.parseBodyDeclaration(
+                "    @Override\n" +
+                "    public void resetModifiedProperties() {\n" +
+                "        modifiedProperties.clear();\n" +
+                "    }\n" ) );
+
+        return new PrettyPrinter( new PrettyPrinterConfiguration() ).print( cu );
+    }
+
+    private static String generateConstructor( String className, Constructor<?> constructor ) {
+        Class<?>[] paramTypes = constructor.getParameterTypes();
+        StringBuilder params = new StringBuilder();
+        StringBuilder args = new StringBuilder();
+        for (int i = 0; i < paramTypes.length; i++) {
+            if (i > 0) {
+                params.append( ", " );
+                args.append( ", " );
+            }
+            params.append( paramTypes[i].getCanonicalName() ).append( " arg" ).append( i );
+            args.append( "arg" ).append( i );
+        }
+        return "public " + className + "(" + params + ")" + getThrowsClause( constructor.getExceptionTypes() ) + " {\n" +
+               "    super(" + args + ");\n" +
+               "}\n";
+    }
+
+    private static String generateSetter( Method setter, String property ) {
+        return "@Override\n" +
+               "public void " + setter.getName() + "(" + setter.getParameterTypes()[0].getCanonicalName() + " value)" +
+               getThrowsClause( setter.getExceptionTypes() ) + " {\n" +
+               "    super." + setter.getName() + "(value);\n" +
+               "    modifiedProperties.add(\"" + property + "\");\n" +
+               "}\n";
+    }
+
+    private static String getThrowsClause( Class<?>[] exceptionTypes ) {
+        if (exceptionTypes.length == 0) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder( " throws " );
+        for (int i = 0; i < exceptionTypes.length; i++) {
+            if (i > 0) {
+                sb.append( ", " );
+            }
+            sb.append( exceptionTypes[i].getCanonicalName() );
+        }
+        return sb.toString();
+    }
+
+    private static String getSetProperty( Method method ) {
+        return isSetter( method ) ? ClassUtils.setter2property( method.getName() ) : null;
+    }
+
+    private static boolean isSetter( Method method ) {
+        return !Modifier.isStatic( method.getModifiers() ) && !method.isBridge() && !method.isSynthetic() &&
+               method.getParameterCount() == 1 && method.getReturnType() == void.class &&
+               method.getDeclaringClass() != Object.class && ClassUtils.setter2property( method.getName() ) != null;
+    }
+
+    private static boolean isAccessible( int modifiers ) {
+        return Modifier.isPublic( modifiers ) || Modifier.isProtected( modifiers );
+    }
+}
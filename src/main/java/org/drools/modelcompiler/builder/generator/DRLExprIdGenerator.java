@@ -16,21 +16,56 @@
 
 package org.drools.modelcompiler.builder.generator;
 
-import java.util.HashMap;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
-import static org.drools.model.impl.NamesGenerator.generateName;
-
+/**
+ * Generates the ids of the expressions of a package. The id is derived from the package name, the pattern type
+ * and the text of the DRL constraint, so the same expression gets the same id in every build of the kjar and
+ * can be used to reference it across builds.
+ */
 public class DRLExprIdGenerator {
-    private Map<PatternTypeDRLConstraint, String> generatedExprIds = new HashMap<>();
-    
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final String pkgName;
+
+    private Map<PatternTypeDRLConstraint, String> generatedExprIds = new LinkedHashMap<>();
+
+    public DRLExprIdGenerator(String pkgName) {
+        this.pkgName = pkgName;
+    }
+
     public String getExprId(Class<?> patternType, String drlConstraint) {
         PatternTypeDRLConstraint key = PatternTypeDRLConstraint.of(patternType, drlConstraint);
-        return generatedExprIds.computeIfAbsent(key, k -> generateNewId());
+        return generatedExprIds.computeIfAbsent(key, this::generateNewId);
     }
     
-    private String generateNewId() {
-        return generateName("expr");
+    private String generateNewId(PatternTypeDRLConstraint key) {
+        return "expr$" + hash( pkgName + ":" + key );
+    }
+
+    /**
+     * Returns 64 bits of the MD5 digest of the given text in hex format: more than enough
+     * to avoid clashes among the expressions, or the rules, of a kjar.
+     */
+    public static String hash(String s) {
+        byte[] digest = md5( s );
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 8; i++) {
+            sb.append( HEX_DIGITS[(digest[i] >> 4) & 0xF] ).append( HEX_DIGITS[digest[i] & 0xF] );
+        }
+        return sb.toString();
+    }
+
+    private static byte[] md5(String s) {
+        try {
+            return MessageDigest.getInstance( "MD5" ).digest( s.getBytes( StandardCharsets.UTF_8 ) );
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException( e );
+        }
     }
     
     @Override
@@ -57,8 +57,10 @@ import org.drools.core.util.index.IndexUtil.ConstraintType;
 import org.drools.drlx.DrlxParser;
 import org.drools.javaparser.JavaParser;
 import org.drools.javaparser.ast.Modifier;
+import org.drools.javaparser.ast.body.FieldDeclaration;
 import org.drools.javaparser.ast.body.MethodDeclaration;
 import org.drools.javaparser.ast.body.Parameter;
+import org.drools.javaparser.ast.body.VariableDeclarator;
 import org.drools.javaparser.ast.drlx.expr.PointFreeExpr;
 import org.drools.javaparser.ast.drlx.expr.TemporalLiteralExpr;
 import org.drools.javaparser.ast.expr.AssignExpr;
@@ -86,6 +88,7 @@ import org.drools.model.Rule;
 import org.drools.model.Variable;
 import org.drools.modelcompiler.builder.PackageModel;
 import org.drools.modelcompiler.builder.RuleDescrImpl;
+import org.drools.modelcompiler.jfr.FlightRecorderEvents;
 import org.kie.internal.builder.conf.LanguageLevelOption;
 
 import static org.drools.javaparser.printer.PrintUtil.toDrlx;
@@ -98,7 +101,22 @@ public class ModelGenerator {
 
     public static final boolean GENERATE_EXPR_ID = true;
 
+    /**
+     * When enabled prints the readable source of the generated model, only meant for debugging purposes.
+     * The model is always compiled from this source, there is no backend emitting its bytecode directly.
+     */
+    public static final boolean DUMP_GENERATED_MODEL = Boolean.getBoolean( "drools.modelcompiler.dumpGeneratedModel" );
+
     public static PackageModel generateModel( InternalKnowledgePackage pkg, List<RuleDescrImpl> rules ) {
+        Object event = FlightRecorderEvents.beginBuildPhase( FlightRecorderEvents.GENERATE_MODEL, pkg.getName() );
+        try {
+            return generatePackageModel( pkg, rules );
+        } finally {
+            FlightRecorderEvents.endBuildPhase( event );
+        }
+    }
+
+    private static PackageModel generatePackageModel( InternalKnowledgePackage pkg, List<RuleDescrImpl> rules ) {
         String name = pkg.getName();
         PackageModel packageModel = new PackageModel( name );
         packageModel.addImports(pkg.getTypeResolver().getImports());
@@ -116,6 +134,7 @@ public class ModelGenerator {
             RuleContext context = new RuleContext( pkg, packageModel.getExprIdGenerator() );
 
             visit(context, ruleDescr.getLhs());
+            packageModel.addPatternClasses(context.patternClasses);
 
             for ( Entry<String, DeclarationSpec> decl : context.declarations.entrySet() ) {
                 ClassOrInterfaceType varType = JavaParser.parseClassOrInterfaceType(Variable.class.getCanonicalName());
@@ -163,7 +182,7 @@ public class ModelGenerator {
             List<String> declUsedInRHS = ruleConsequence.getChildNodesByType(NameExpr.class).stream().map(NameExpr::getNameAsString).collect(Collectors.toList());
             List<String> verifiedDeclUsedInRHS = context.declarations.keySet().stream().filter(declUsedInRHS::contains).collect(Collectors.toList());
 
-            boolean rhsRewritten = rewriteRHS(context, ruleBlock, ruleConsequence);
+            boolean rhsRewritten = rewriteRHS(context, packageModel, ruleMethod.getNameAsString(), ruleConsequence);
 
             MethodCallExpr thenCall = new MethodCallExpr(viewCall, "then");
             MethodCallExpr onCall = null;
@@ -189,11 +208,12 @@ public class ModelGenerator {
             ruleBlock.addStatement(ruleAssign);
 
             ruleBlock.addStatement( new ReturnStmt("rule") );
-            System.out.println(ruleMethod);
-            packageModel.putRuleMethod("rule_" + toId( ruleDescr.getName() ), ruleMethod);
+            packageModel.putRuleMethod("rule_" + toId( ruleDescr.getName() ), ruleMethod, ruleDescr.getName(), descr.getImpl().getRuleUnitClassName());
         }
 
-        packageModel.print();
+        if (DUMP_GENERATED_MODEL) {
+            packageModel.print();
+        }
         return packageModel;
     }
 
@@ -241,7 +261,7 @@ public class ModelGenerator {
         return sb.toString();
     }
 
-    private static boolean rewriteRHS(RuleContext context, BlockStmt ruleBlock, BlockStmt rhs) {
+    private static boolean rewriteRHS(RuleContext context, PackageModel packageModel, String ruleMethodName, BlockStmt rhs) {
         List<MethodCallExpr> methodCallExprs = rhs.getChildNodesByType(MethodCallExpr.class);
         List<MethodCallExpr> updateExprs = new ArrayList<>();
 
@@ -273,11 +293,13 @@ public class ModelGenerator {
                                .distinct()
                                .forEach( s -> bitMaskCreation.addArgument( new StringLiteralExpr( s ) ) );
 
-                VariableDeclarationExpr bitMaskVar = new VariableDeclarationExpr(BITMASK_TYPE, "mask_" + updatedVar, Modifier.FINAL);
-                AssignExpr bitMaskAssign = new AssignExpr(bitMaskVar, bitMaskCreation, AssignExpr.Operator.ASSIGN);
-                ruleBlock.addStatement(bitMaskAssign);
+                // the mask is a constant of the Rules class, so the property names are resolved only once when the class is loaded
+                String bitMaskName = "mask_" + ruleMethodName + "_" + updatedVar;
+                FieldDeclaration bitMaskField = new FieldDeclaration( EnumSet.of( Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL ),
+                                                                      new VariableDeclarator( BITMASK_TYPE, bitMaskName, bitMaskCreation ) );
+                packageModel.addRuleField( ruleMethodName, bitMaskField );
 
-                updateExpr.addArgument( "mask_" + updatedVar );
+                updateExpr.addArgument( bitMaskName );
             }
         }
 
@@ -426,6 +448,7 @@ public class ModelGenerator {
         } catch (ClassNotFoundException e) {
             throw new RuntimeException( e );
         }
+        context.patternClasses.add( patternType );
 
         if (pattern.getIdentifier() != null) {
             context.declarations.put( pattern.getIdentifier(), new DeclarationSpec( patternType, pattern ));
@@ -442,14 +465,11 @@ public class ModelGenerator {
                 declarationOfCall.addArgument(typeCall);
                 dslExpr.addArgument( declarationOfCall );
             }
-            System.out.println("Adding newExpression: "+dslExpr);
             context.addExpression( dslExpr );
         } else {
             for (BaseDescr constraint : pattern.getConstraint().getDescrs()) {
                 String expression = constraint.toString();
                 Expression dslExpr = drlxParse(context, patternType, pattern.getIdentifier(), expression);
-
-                System.out.println("Adding newExpression: "+dslExpr);
                 context.addExpression( dslExpr );
             }
         }
@@ -556,7 +576,6 @@ public class ModelGenerator {
             throw new UnsupportedOperationException("TODO"); // TODO
         }
 
-        System.out.println(singletonDescr);
         RelationalExprDescr relationalExprDescr = (RelationalExprDescr) singletonDescr;
         IndexUtil.ConstraintType decodeConstraintType = IndexUtil.ConstraintType.decode( relationalExprDescr.getOperator() );
         // to be visited
@@ -672,6 +691,7 @@ public class ModelGenerator {
         private DRLExprIdGenerator exprIdGenerator;
 
         Map<String, DeclarationSpec> declarations = new HashMap<>();
+        Set<Class<?>> patternClasses = new HashSet<>();
         Deque<Consumer<Expression>> exprPointer = new LinkedList<>();
         List<Expression> expressions = new ArrayList<>();
 
@@ -39,15 +39,30 @@ import org.drools.model.bitmask.LongBitMask;
 import org.drools.model.bitmask.OpenBitSet;
 import org.drools.model.functions.FunctionN;
 import org.drools.modelcompiler.RuleContext;
+import org.drools.modelcompiler.jfr.FlightRecorderEvents;
 
 public class LambdaConsequence implements Consequence {
 
     private final org.drools.model.Consequence consequence;
     private final RuleContext context;
+    private final String ruleFingerprint;
 
     public LambdaConsequence( org.drools.model.Consequence consequence, RuleContext context ) {
+        this( consequence, context, null );
+    }
+
+    public LambdaConsequence( org.drools.model.Consequence consequence, RuleContext context, String ruleFingerprint ) {
         this.consequence = consequence;
         this.context = context;
+        this.ruleFingerprint = ruleFingerprint;
+    }
+
+    public org.drools.model.Consequence getModelConsequence() {
+        return consequence;
+    }
+
+    public String getRuleFingerprint() {
+        return ruleFingerprint;
     }
 
     @Override
@@ -57,6 +72,19 @@ public class LambdaConsequence implements Consequence {
 
     @Override
     public void evaluate( KnowledgeHelper knowledgeHelper, WorkingMemory workingMemory ) throws Exception {
+        if (!FlightRecorderEvents.isRuleFiringEnabled()) {
+            fire( knowledgeHelper, workingMemory );
+            return;
+        }
+        Object event = FlightRecorderEvents.beginRuleFiring();
+        try {
+            fire( knowledgeHelper, workingMemory );
+        } finally {
+            FlightRecorderEvents.endRuleFiring( event, context.getRule()::getFullyQualifiedName );
+        }
+    }
+
+    private void fire( KnowledgeHelper knowledgeHelper, WorkingMemory workingMemory ) throws Exception {
         Tuple tuple = knowledgeHelper.getTuple();
         Declaration[] declarations = ((RuleTerminalNode)knowledgeHelper.getMatch().getTuple().getTupleSink()).getRequiredDeclarations();
 
@@ -67,7 +95,7 @@ public class LambdaConsequence implements Consequence {
         if (consequence.isUsingDrools()) {
             factsOffset++;
             facts = new Object[vars.length + 1];
-            facts[0] = new DroolsImpl(knowledgeHelper, workingMemory);
+            facts[0] = createDrools(knowledgeHelper, workingMemory);
         } else {
             facts = new Object[vars.length];
         }
@@ -86,7 +114,7 @@ public class LambdaConsequence implements Consequence {
             }
         }
 
-        consequence.getBlock().execute( facts );
+        executeBlock( facts );
 
         Object[] objs = knowledgeHelper.getTuple().toObjects();
 
@@ -107,6 +135,14 @@ public class LambdaConsequence implements Consequence {
         }
     }
 
+    protected DroolsImpl createDrools( KnowledgeHelper knowledgeHelper, WorkingMemory workingMemory ) {
+        return new DroolsImpl( knowledgeHelper, workingMemory );
+    }
+
+    protected void executeBlock( Object[] facts ) throws Exception {
+        consequence.getBlock().execute( facts );
+    }
+
     public static class DroolsImpl implements Drools {
         private final KnowledgeHelper knowledgeHelper;
         private final WorkingMemory workingMemory;
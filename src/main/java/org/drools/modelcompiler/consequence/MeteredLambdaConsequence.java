@@ -0,0 +1,112 @@
+/*
+ * Copyright 2005 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.modelcompiler.consequence;
+
+import org.drools.core.WorkingMemory;
+import org.drools.core.spi.KnowledgeHelper;
+import org.drools.model.BitMask;
+import org.drools.modelcompiler.RuleContext;
+import org.drools.modelcompiler.metrics.RuleMetrics;
+
+/**
+ * A LambdaConsequence recording the firings of its rule in its {@link RuleMetrics}: the time of the consequence block,
+ * and the facts inserted, updated and deleted both through the Drools object and by the inserts, updates and deletes
+ * declared by the consequence. It is used in place of the plain LambdaConsequence only when the rule metrics are
+ * enabled while building the KieBase.
+ */
+public class MeteredLambdaConsequence extends LambdaConsequence {
+
+    private final RuleMetrics metrics;
+
+    private final int declaredInserts;
+    private final int declaredUpdates;
+    private final int declaredDeletes;
+
+    public MeteredLambdaConsequence( org.drools.model.Consequence consequence, RuleContext context, String ruleFingerprint, RuleMetrics metrics ) {
+        super( consequence, context, ruleFingerprint );
+        this.metrics = metrics;
+        this.declaredInserts = consequence.getInserts().length;
+        this.declaredUpdates = consequence.getUpdates().length;
+        this.declaredDeletes = consequence.getDeletes().length;
+    }
+
+    @Override
+    protected DroolsImpl createDrools( KnowledgeHelper knowledgeHelper, WorkingMemory workingMemory ) {
+        return new MeteredDroolsImpl( knowledgeHelper, workingMemory, metrics );
+    }
+
+    @Override
+    protected void executeBlock( Object[] facts ) throws Exception {
+        long start = System.nanoTime();
+        try {
+            super.executeBlock( facts );
+        } finally {
+            metrics.recordFiring( System.nanoTime() - start );
+        }
+        recordDeclaredOperations();
+    }
+
+    private void recordDeclaredOperations() {
+        if (declaredInserts > 0) {
+            metrics.recordInserts( declaredInserts );
+        }
+        if (declaredUpdates > 0) {
+            metrics.recordUpdates( declaredUpdates );
+        }
+        if (declaredDeletes > 0) {
+            metrics.recordDeletes( declaredDeletes );
+        }
+    }
+
+    public RuleMetrics getMetrics() {
+        return metrics;
+    }
+
+    static class MeteredDroolsImpl extends DroolsImpl {
+
+        private final RuleMetrics metrics;
+
+        MeteredDroolsImpl( KnowledgeHelper knowledgeHelper, WorkingMemory workingMemory, RuleMetrics metrics ) {
+            super( knowledgeHelper, workingMemory );
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void insert( Object object ) {
+            metrics.recordInserts( 1 );
+            super.insert( object );
+        }
+
+        @Override
+        public void update( Object object, String... modifiedProperties ) {
+            metrics.recordUpdates( 1 );
+            super.update( object, modifiedProperties );
+        }
+
+        @Override
+        public void update( Object object, BitMask modifiedProperties ) {
+            metrics.recordUpdates( 1 );
+            super.update( object, modifiedProperties );
+        }
+
+        @Override
+        public void delete( Object object ) {
+            metrics.recordDeletes( 1 );
+            super.delete( object );
+        }
+    }
+}
@@ -101,12 +101,35 @@ public class ConstraintEvaluator {
     public boolean equals(Object other) {
         if (this == other) return true;
         if (other == null || getClass() != other.getClass()) return false;
-        return getId().equals(((ConstraintEvaluator) other).getId());
+        ConstraintEvaluator otherEvaluator = (ConstraintEvaluator) other;
+        // the same expression id is not enough: the same expression could be applied to a different type
+        // or reference declarations bound to different patterns
+        return getId().equals( otherEvaluator.getId() ) &&
+               pattern.getObjectType().equals( otherEvaluator.pattern.getObjectType() ) &&
+               haveSameDeclarations( otherEvaluator );
+    }
+
+    private boolean haveSameDeclarations( ConstraintEvaluator other ) {
+        if (declarations.length != other.declarations.length) {
+            return false;
+        }
+        for (int i = 0; i < declarations.length; i++) {
+            if ( !declarations[i].getIdentifier().equals( other.declarations[i].getIdentifier() ) ||
+                 getPatternOffset( declarations[i] ) != getPatternOffset( other.declarations[i] ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int getPatternOffset( Declaration declaration ) {
+        // the declarations of the globals don't belong to any pattern
+        return declaration.getPattern() != null ? declaration.getPattern().getOffset() : -1;
     }
 
     @Override
     public int hashCode() {
-        return getId().hashCode();
+        return 31 * getId().hashCode() + pattern.getObjectType().hashCode();
     }
 
     public String getId() {
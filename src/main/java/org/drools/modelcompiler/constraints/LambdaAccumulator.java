@@ -8,6 +8,7 @@ import org.drools.core.rule.Declaration;
 import org.drools.core.spi.Accumulator;
 import org.drools.core.spi.Tuple;
 import org.drools.model.AccumulateFunction;
+import org.drools.modelcompiler.jfr.FlightRecorderEvents;
 
 public class LambdaAccumulator implements Accumulator {
 
@@ -49,6 +50,14 @@ public class LambdaAccumulator implements Accumulator {
 
     @Override
     public Object getResult(Object workingMemoryContext, Object context, Tuple leftTuple, Declaration[] declarations, WorkingMemory workingMemory) throws Exception {
-        return accumulateFunction.result((Serializable)context);
+        if (!FlightRecorderEvents.isAccumulateResultEnabled()) {
+            return accumulateFunction.result((Serializable)context);
+        }
+        Object event = FlightRecorderEvents.beginAccumulateResult();
+        try {
+            return accumulateFunction.result((Serializable)context);
+        } finally {
+            FlightRecorderEvents.endAccumulateResult( event, accumulateFunction.getClass()::getName );
+        }
     }
 }
@@ -34,6 +34,9 @@ public class LambdaConstraint extends MutableTypeConstraint implements Indexable
     private InternalReadAccessor readAccessor;
     private Declaration indexingDeclaration;
 
+    // the settable properties of a type are the same list for all its patterns, so the mask is resolved only once
+    private volatile ListenedPropertyMask listenedPropertyMask;
+
     public LambdaConstraint(ConstraintEvaluator evaluator) {
         this.evaluator = evaluator;
         initIndexes();
@@ -65,6 +68,17 @@ public class LambdaConstraint extends MutableTypeConstraint implements Indexable
         if (evaluator.getReactiveProps() == null) {
             return super.getListenedPropertyMask( settableProperties );
         }
+        // the mask and its settable properties are read from the same holder, so they are always consistent
+        ListenedPropertyMask mask = listenedPropertyMask;
+        if (mask == null || mask.settableProperties != settableProperties) {
+            mask = new ListenedPropertyMask( settableProperties, calculateListenedPropertyMask( settableProperties ) );
+            listenedPropertyMask = mask;
+        }
+        // the returned mask could be modified by the caller
+        return mask.mask.clone();
+    }
+
+    private BitMask calculateListenedPropertyMask( List<String> settableProperties ) {
         BitMask mask = getEmptyPropertyReactiveMask(settableProperties.size());
         for (String prop : evaluator.getReactiveProps()) {
             int pos = settableProperties.indexOf(prop);
@@ -79,12 +93,17 @@ public class LambdaConstraint extends MutableTypeConstraint implements Indexable
 
     @Override
     public LambdaConstraint clone() {
-        LambdaConstraint clone = new LambdaConstraint( evaluator.clone() );
+        LambdaConstraint clone = newInstance( evaluator.clone() );
         clone.field = this.field;
         clone.readAccessor = this.readAccessor;
+        clone.listenedPropertyMask = this.listenedPropertyMask;
         return clone;
     }
 
+    protected LambdaConstraint newInstance( ConstraintEvaluator evaluator ) {
+        return new LambdaConstraint( evaluator );
+    }
+
     @Override
     public boolean isTemporal() {
         return evaluator.isTemporal();
@@ -164,6 +183,17 @@ public class LambdaConstraint extends MutableTypeConstraint implements Indexable
         return readAccessor;
     }
 
+    private static class ListenedPropertyMask {
+
+        private final List<String> settableProperties;
+        private final BitMask mask;
+
+        private ListenedPropertyMask( List<String> settableProperties, BitMask mask ) {
+            this.settableProperties = settableProperties;
+            this.mask = mask;
+        }
+    }
+
     public static class LambdaContextEntry implements ContextEntry {
 
         private Tuple tuple;
@@ -224,7 +254,8 @@ public class LambdaConstraint extends MutableTypeConstraint implements Indexable
     @Override
     public boolean equals(Object other) {
         if ( this == other ) return true;
-        return other != null && getClass() == other.getClass() && evaluator.equals( ( (LambdaConstraint) other ).evaluator );
+        // compared on the evaluator only, so a metered constraint is the same as the plain one with the same expression
+        return other instanceof LambdaConstraint && evaluator.equals( ( (LambdaConstraint) other ).evaluator );
     }
 
     @Override
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2005 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.modelcompiler.constraints;
+
+import org.drools.core.common.InternalFactHandle;
+import org.drools.core.common.InternalWorkingMemory;
+import org.drools.core.rule.ContextEntry;
+import org.drools.core.spi.Tuple;
+import org.drools.modelcompiler.metrics.ConstraintMetrics;
+
+/**
+ * A LambdaConstraint recording its evaluations in the {@link ConstraintMetrics} of its expression id, which are shared
+ * with its clones.
+ * It is used in place of the plain LambdaConstraint only when the metrics are enabled while building the KieBase.
+ */
+public class MeteredLambdaConstraint extends LambdaConstraint {
+
+    private final ConstraintMetrics metrics;
+
+    public MeteredLambdaConstraint( ConstraintEvaluator evaluator, ConstraintMetrics metrics ) {
+        super( evaluator );
+        this.metrics = metrics;
+    }
+
+    @Override
+    protected LambdaConstraint newInstance( ConstraintEvaluator evaluator ) {
+        return new MeteredLambdaConstraint( evaluator, metrics );
+    }
+
+    @Override
+    public boolean isAllowed( InternalFactHandle handle, InternalWorkingMemory workingMemory ) {
+        long start = metrics.startEvaluation();
+        return metrics.endEvaluation( start, super.isAllowed( handle, workingMemory ) );
+    }
+
+    @Override
+    public boolean isAllowedCachedLeft( ContextEntry context, InternalFactHandle handle ) {
+        long start = metrics.startEvaluation();
+        return metrics.endEvaluation( start, super.isAllowedCachedLeft( context, handle ) );
+    }
+
+    @Override
+    public boolean isAllowedCachedRight( Tuple tuple, ContextEntry context ) {
+        long start = metrics.startEvaluation();
+        return metrics.endEvaluation( start, super.isAllowedCachedRight( tuple, context ) );
+    }
+
+    public ConstraintMetrics getMetrics() {
+        return metrics;
+    }
+}
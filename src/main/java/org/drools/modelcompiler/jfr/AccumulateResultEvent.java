@@ -0,0 +1,39 @@
+/*
+ * Copyright 2005 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.modelcompiler.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * A Flight Recorder event for the computation of the result of an accumulate function, happening each time the
+ * accumulated facts of a tuple change. As for the {@link RuleFiringEvent}, it is recorded only when it takes longer than
+ * its threshold, that can be changed through the org.drools.modelcompiler.AccumulateResult#threshold option.
+ */
+@Name("org.drools.modelcompiler.AccumulateResult")
+@Label("Accumulate Result")
+@Category({"Drools", "Rule Execution"})
+@Description("The computation of the result of an accumulate function")
+@Threshold("1 ms")
+public class AccumulateResultEvent extends jdk.jfr.Event {
+
+    @Label("Function")
+    String function;
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2005 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.modelcompiler.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Flight Recorder event for a phase of the build of a kjar or of a KieBase from the executable model, so a recording
+ * shows where the build time goes next to the GC and the I/O of the same interval.
+ */
+@Name("org.drools.modelcompiler.BuildPhase")
+@Label("Build Phase")
+@Category({"Drools", "Model Compiler"})
+@Description("A phase of the build of the executable model or of a KieBase from it")
+public class BuildPhaseEvent extends jdk.jfr.Event {
+
+    @Label("Phase")
+    private String phase;
+
+    @Label("Subject")
+    @Description("The package, model or KieBase the phase is working on")
+    private String subject;
+
+    BuildPhaseEvent( String phase, String subject ) {
+        this.phase = phase;
+        this.subject = subject;
+    }
+}
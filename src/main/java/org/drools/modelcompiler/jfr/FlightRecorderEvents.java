@@ -0,0 +1,99 @@
+/*
+ * Copyright 2005 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.modelcompiler.jfr;
+
+import java.util.function.Supplier;
+
+/**
+ * Emits the Flight Recorder events of the model compiler, without exposing any jdk.jfr type to its callers.
+ * The availability of the Flight Recorder is checked once: on a JVM without it all the methods are no-ops,
+ * so the engine keeps running on Java 8 runtimes older than 8u262. Compiling the JfrEvents behind it instead
+ * requires a JDK providing jdk.jfr, that is 8u262 or later.
+ * An event is created only when its type is enabled in a running recording, so without recordings the hot paths
+ * pay just a check of the event type.
+ * The begin methods return null when the event isn't recorded, and the end methods accept it.
+ */
+public final class FlightRecorderEvents {
+
+    public static final String COMPILE_KNOWLEDGE_PACKAGES = "compileKnowledgePackages";
+    public static final String GENERATE_MODEL = "generateModel";
+    public static final String COMPILE_JAVA = "compileJava";
+    public static final String CREATE_KIE_BASE = "createKieBase";
+    public static final String ADD_MODEL = "addModel";
+
+    private static final boolean AVAILABLE = checkAvailable();
+
+    private FlightRecorderEvents() { }
+
+    private static boolean checkAvailable() {
+        try {
+            return JfrEvents.isFlightRecorderAvailable();
+        } catch (LinkageError e) {
+            // jdk.jfr is missing from this runtime
+            return false;
+        }
+    }
+
+    public static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    public static Object beginBuildPhase( String phase, String subject ) {
+        return AVAILABLE && JfrEvents.isBuildPhaseEnabled() ? JfrEvents.beginBuildPhase( phase, subject ) : null;
+    }
+
+    public static void endBuildPhase( Object event ) {
+        if (event != null) {
+            JfrEvents.endBuildPhase( event );
+        }
+    }
+
+    public static boolean isRuleFiringEnabled() {
+        return AVAILABLE && JfrEvents.isRuleFiringEnabled();
+    }
+
+    /**
+     * To be called only when {@link #isRuleFiringEnabled()}.
+     */
+    public static Object beginRuleFiring() {
+        return JfrEvents.beginRuleFiring();
+    }
+
+    public static void endRuleFiring( Object event, Supplier<String> ruleName ) {
+        // the rule name is resolved only for the firings over the threshold
+        if (JfrEvents.shouldCommit( event )) {
+            JfrEvents.endRuleFiring( event, ruleName.get() );
+        }
+    }
+
+    public static boolean isAccumulateResultEnabled() {
+        return AVAILABLE && JfrEvents.isAccumulateResultEnabled();
+    }
+
+    /**
+     * To be called only when {@link #isAccumulateResultEnabled()}.
+     */
+    public static Object beginAccumulateResult() {
+        return JfrEvents.beginAccumulateResult();
+    }
+
+    public static void endAccumulateResult( Object event, Supplier<String> function ) {
+        if (JfrEvents.shouldCommit( event )) {
+            JfrEvents.endAccumulateResult( event, function.get() );
+        }
+    }
+}
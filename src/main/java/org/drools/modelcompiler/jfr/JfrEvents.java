@@ -0,0 +1,87 @@
+/*
+ * Copyright 2005 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.modelcompiler.jfr;
+
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+
+/**
+ * The only class, together with the events themselves, linking to jdk.jfr: it is loaded through
+ * {@link FlightRecorderEvents} only after having checked that the Flight Recorder is available.
+ */
+class JfrEvents {
+
+    private static final EventType BUILD_PHASE = EventType.getEventType( BuildPhaseEvent.class );
+    private static final EventType RULE_FIRING = EventType.getEventType( RuleFiringEvent.class );
+    private static final EventType ACCUMULATE_RESULT = EventType.getEventType( AccumulateResultEvent.class );
+
+    private JfrEvents() { }
+
+    static boolean isFlightRecorderAvailable() {
+        return FlightRecorder.isAvailable();
+    }
+
+    static boolean isBuildPhaseEnabled() {
+        return BUILD_PHASE.isEnabled();
+    }
+
+    static boolean isRuleFiringEnabled() {
+        return RULE_FIRING.isEnabled();
+    }
+
+    static boolean isAccumulateResultEnabled() {
+        return ACCUMULATE_RESULT.isEnabled();
+    }
+
+    static Object beginBuildPhase( String phase, String subject ) {
+        BuildPhaseEvent event = new BuildPhaseEvent( phase, subject );
+        event.begin();
+        return event;
+    }
+
+    static void endBuildPhase( Object event ) {
+        ( (BuildPhaseEvent) event ).commit();
+    }
+
+    static Object beginRuleFiring() {
+        RuleFiringEvent event = new RuleFiringEvent();
+        event.begin();
+        return event;
+    }
+
+    static void endRuleFiring( Object event, String ruleName ) {
+        RuleFiringEvent ruleFiringEvent = (RuleFiringEvent) event;
+        ruleFiringEvent.ruleName = ruleName;
+        ruleFiringEvent.commit();
+    }
+
+    static boolean shouldCommit( Object event ) {
+        return ( (jdk.jfr.Event) event ).shouldCommit();
+    }
+
+    static Object beginAccumulateResult() {
+        AccumulateResultEvent event = new AccumulateResultEvent();
+        event.begin();
+        return event;
+    }
+
+    static void endAccumulateResult( Object event, String function ) {
+        AccumulateResultEvent accumulateResultEvent = (AccumulateResultEvent) event;
+        accumulateResultEvent.function = function;
+        accumulateResultEvent.commit();
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2005 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.modelcompiler.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * A Flight Recorder event for the firing of a rule, recorded only when it takes longer than its threshold.
+ * The default threshold can be changed in the recording settings through the org.drools.modelcompiler.RuleFiring#threshold
+ * option, for instance lowering it to 0 ms to record all the firings.
+ */
+@Name("org.drools.modelcompiler.RuleFiring")
+@Label("Rule Firing")
+@Category({"Drools", "Rule Execution"})
+@Description("The execution of the consequence of a rule")
+@Threshold("10 ms")
+public class RuleFiringEvent extends jdk.jfr.Event {
+
+    @Label("Rule")
+    String ruleName;
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2005 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.modelcompiler.metrics;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The evaluation metrics of all the constraints of a KieBase with the same expression id. The counters are LongAdders, so the
+ * sessions of different threads evaluating the same constraint don't contend on them. Only one evaluation out of
+ * the sampling rate is timed, to keep the calls to System.nanoTime() off most of the evaluations.
+ */
+public class ConstraintMetrics {
+
+    private static final long NOT_SAMPLED = Long.MIN_VALUE;
+
+    private final String kieBaseId;
+    private final String constraintId;
+    private final int samplingRate;
+
+    private final LongAdder evaluations = new LongAdder();
+    private final LongAdder passes = new LongAdder();
+    private final LongAdder sampledEvaluations = new LongAdder();
+    private final LongAdder sampledNanos = new LongAdder();
+
+    ConstraintMetrics( String kieBaseId, String constraintId, int samplingRate ) {
+        this.kieBaseId = kieBaseId;
+        this.constraintId = constraintId;
+        this.samplingRate = samplingRate;
+    }
+
+    /**
+     * To be called before an evaluation, passing the returned value to {@link #endEvaluation(long, boolean)}.
+     */
+    public long startEvaluation() {
+        return ThreadLocalRandom.current().nextInt( samplingRate ) == 0 ? System.nanoTime() : NOT_SAMPLED;
+    }
+
+    public boolean endEvaluation( long start, boolean passed ) {
+        if (start != NOT_SAMPLED) {
+            sampledNanos.add( System.nanoTime() - start );
+            sampledEvaluations.increment();
+        }
+        evaluations.increment();
+        if (passed) {
+            passes.increment();
+        }
+        return passed;
+    }
+
+    public String getKieBaseId() {
+        return kieBaseId;
+    }
+
+    public String getConstraintId() {
+        return constraintId;
+    }
+
+    public long getEvaluations() {
+        return evaluations.sum();
+    }
+
+    public long getPasses() {
+        return passes.sum();
+    }
+
+    /**
+     * The ratio of the evaluations that passed the constraint, or NaN if it has never been evaluated.
+     */
+    public double getSelectivity() {
+        long evaluationsCount = getEvaluations();
+        return evaluationsCount == 0 ? Double.NaN : (double) getPasses() / evaluationsCount;
+    }
+
+    public long getSampledEvaluations() {
+        return sampledEvaluations.sum();
+    }
+
+    /**
+     * The average time of the sampled evaluations, or NaN if no evaluation has been sampled yet.
+     */
+    public double getAverageEvaluationNanos() {
+        long sampledCount = getSampledEvaluations();
+        return sampledCount == 0 ? Double.NaN : (double) sampledNanos.sum() / sampledCount;
+    }
+
+    /**
+     * The time spent in all the evaluations, estimated from the sampled ones.
+     */
+    public long getEstimatedTotalNanos() {
+        long sampledCount = getSampledEvaluations();
+        return sampledCount == 0 ? 0 : sampledNanos.sum() * getEvaluations() / sampledCount;
+    }
+
+    void reset() {
+        evaluations.reset();
+        passes.reset();
+        sampledEvaluations.reset();
+        sampledNanos.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "ConstraintMetrics{" +
+               "kieBaseId='" + kieBaseId + '\'' +
+               ", constraintId='" + constraintId + '\'' +
+               ", evaluations=" + getEvaluations() +
+               ", selectivity=" + getSelectivity() +
+               ", averageEvaluationNanos=" + getAverageEvaluationNanos() +
+               '}';
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2005 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.modelcompiler.metrics;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.kie.api.KieBase;
+
+/**
+ * Collects the {@link ConstraintMetrics} of all the constraints, keyed by the id of their KieBase and by expression id,
+ * and exposes them through JMX under the {@link #OBJECT_NAME} name. The metrics of a KieBase are removed together
+ * with it, as tracked by the {@link KieBaseMetricsTracker}.
+ * Whether the metrics are enabled is checked only when the constraints are created: the KieBases built while they
+ * are disabled use the plain constraints, so they pay nothing for them on the hot path.
+ * They are enabled with -Ddrools.modelcompiler.constraintMetrics=true or with {@link #setEnabled(boolean)} before
+ * building the KieBase, while -Ddrools.modelcompiler.constraintMetrics.samplingRate sets how many evaluations
+ * are counted for each timed one.
+ */
+public class ConstraintMetricsRegistry implements ConstraintMetricsMXBean {
+
+    public static final String OBJECT_NAME = "org.drools.modelcompiler:type=ConstraintMetrics";
+
+    private static final int SAMPLING_RATE = Math.max( 1, Integer.getInteger( "drools.modelcompiler.constraintMetrics.samplingRate", 64 ) );
+
+    private static final ConstraintMetricsRegistry INSTANCE = new ConstraintMetricsRegistry();
+
+    private volatile boolean enabled = Boolean.getBoolean( "drools.modelcompiler.constraintMetrics" );
+    private volatile boolean registeredInJmx;
+
+    private final Map<String, Map<String, ConstraintMetrics>> metricsByKieBase = new ConcurrentHashMap<>();
+
+    private ConstraintMetricsRegistry() { }
+
+    public static ConstraintMetricsRegistry get() {
+        return INSTANCE;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled( boolean enabled ) {
+        this.enabled = enabled;
+    }
+
+    public ConstraintMetrics getMetrics( String kieBaseId, String constraintId ) {
+        registerInJmx();
+        KieBaseMetricsTracker.purgeCollectedKieBases();
+        return metricsByKieBase.computeIfAbsent( kieBaseId, id -> new ConcurrentHashMap<>() )
+                               .computeIfAbsent( constraintId, id -> new ConstraintMetrics( kieBaseId, id, SAMPLING_RATE ) );
+    }
+
+    /**
+     * The metrics of the constraints of the given KieBase, or an empty list if it has been built without them.
+     */
+    public List<ConstraintMetrics> getConstraintMetrics( KieBase kieBase ) {
+        return KieBaseMetricsTracker.getKieBaseIds( kieBase ).stream()
+                                    .flatMap( id -> metricsByKieBase.getOrDefault( id, Collections.emptyMap() ).values().stream() )
+                                    .collect( Collectors.toList() );
+    }
+
+    /**
+     * Removes the metrics of the given KieBase not among the used ones, like the metrics of the rules removed from it
+     * or of the unchanged rules discarded while updating it, so they don't linger with zero evaluations.
+     */
+    public void retainMetrics( KieBase kieBase, Collection<ConstraintMetrics> usedMetrics ) {
+        for (String kieBaseId : KieBaseMetricsTracker.getKieBaseIds( kieBase )) {
+            Map<String, ConstraintMetrics> metrics = metricsByKieBase.get( kieBaseId );
+            if (metrics != null) {
+                metrics.values().retainAll( usedMetrics );
+            }
+        }
+    }
+
+    @Override
+    public List<ConstraintMetrics> getConstraintMetrics() {
+        return allMetrics().collect( Collectors.toList() );
+    }
+
+    @Override
+    public List<ConstraintMetrics> getMostExpensiveConstraints( int count ) {
+        return allMetrics().sorted( Comparator.comparingLong( ConstraintMetrics::getEstimatedTotalNanos ).reversed() )
+                           .limit( count )
+                           .collect( Collectors.toList() );
+    }
+
+    @Override
+    public void reset() {
+        allMetrics().forEach( ConstraintMetrics::reset );
+    }
+
+    private Stream<ConstraintMetrics> allMetrics() {
+        KieBaseMetricsTracker.purgeCollectedKieBases();
+        return metricsByKieBase.values().stream().flatMap( metrics -> metrics.values().stream() );
+    }
+
+    boolean hasKieBase( String kieBaseId ) {
+        return metricsByKieBase.containsKey( kieBaseId );
+    }
+
+    void removeKieBase( String kieBaseId ) {
+        metricsByKieBase.remove( kieBaseId );
+    }
+
+    private void registerInJmx() {
+        if (registeredInJmx) {
+            return;
+        }
+        synchronized (this) {
+            if (!registeredInJmx) {
+                MetricsUtil.registerInJmx( this, OBJECT_NAME );
+                registeredInJmx = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2005 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.modelcompiler.metrics;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.kie.api.KieBase;
+
+/**
+ * Scopes the constraint and rule metrics to the KieBase they are collected for, so the metrics of different KieBases
+ * with the same expressions and rules are kept apart and don't outlive them.
+ * Each build gets a new id from {@link #newKieBaseId(String)}, under which the metrics of the constraints and of the
+ * rules it compiles are registered, and the id is bound with {@link #bind(String, KieBase)} to the KieBase created or
+ * updated from them. The metrics of a KieBase are removed from the registries by {@link #dispose(KieBase)} or,
+ * at the latest, once the KieBase has been garbage collected.
+ */
+public final class KieBaseMetricsTracker {
+
+    private static final AtomicLong KIE_BASE_COUNTER = new AtomicLong();
+
+    private static final ReferenceQueue<KieBase> COLLECTED_KIE_BASES = new ReferenceQueue<>();
+    private static final Set<KieBaseReference> KIE_BASES = ConcurrentHashMap.newKeySet();
+
+    private KieBaseMetricsTracker() { }
+
+    public static String newKieBaseId( String kieBaseName ) {
+        return kieBaseName + "#" + KIE_BASE_COUNTER.incrementAndGet();
+    }
+
+    /**
+     * Binds the metrics registered under the given id to the KieBase, if any: a KieBase updated more than once
+     * has the ids of all its updates bound.
+     */
+    public static void bind( String kieBaseId, KieBase kieBase ) {
+        purgeCollectedKieBases();
+        if ( ConstraintMetricsRegistry.get().hasKieBase( kieBaseId ) || RuleMetricsRegistry.get().hasKieBase( kieBaseId ) ) {
+            KIE_BASES.add( new KieBaseReference( kieBase, kieBaseId, COLLECTED_KIE_BASES ) );
+        }
+    }
+
+    /**
+     * Removes from the registries all the metrics bound to the KieBase.
+     */
+    public static void dispose( KieBase kieBase ) {
+        for (KieBaseReference reference : KIE_BASES) {
+            if (reference.get() == kieBase) {
+                remove( reference );
+            }
+        }
+    }
+
+    static Set<String> getKieBaseIds( KieBase kieBase ) {
+        return KIE_BASES.stream()
+                        .filter( reference -> reference.get() == kieBase )
+                        .map( reference -> reference.kieBaseId )
+                        .collect( Collectors.toSet() );
+    }
+
+    static void purgeCollectedKieBases() {
+        for (Reference<?> reference = COLLECTED_KIE_BASES.poll(); reference != null; reference = COLLECTED_KIE_BASES.poll()) {
+            remove( (KieBaseReference) reference );
+        }
+    }
+
+    private static void remove( KieBaseReference reference ) {
+        if (KIE_BASES.remove( reference )) {
+            ConstraintMetricsRegistry.get().removeKieBase( reference.kieBaseId );
+            RuleMetricsRegistry.get().removeKieBase( reference.kieBaseId );
+        }
+    }
+
+    private static class KieBaseReference extends WeakReference<KieBase> {
+
+        private final String kieBaseId;
+
+        KieBaseReference( KieBase kieBase, String kieBaseId, ReferenceQueue<KieBase> queue ) {
+            super( kieBase, queue );
+            this.kieBaseId = kieBaseId;
+        }
+    }
+}
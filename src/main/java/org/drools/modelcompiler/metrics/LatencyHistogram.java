@@ -0,0 +1,85 @@
+/*
+ * Copyright 2005 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.modelcompiler.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent histogram of latencies in nanoseconds, with a bucket for each power of 2. It's coarser than
+ * an HdrHistogram, since a percentile is only known within a factor of 2, but this is enough to tell apart a fast
+ * consequence from a slow one, and recording a value is just an increment of a LongAdder.
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 64;
+
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+    private final LongAdder totalNanos = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    public void record( long nanos ) {
+        // bucket i holds the values lower than 2^i
+        counts[BUCKETS - Long.numberOfLeadingZeros( Math.max( 0, nanos ) )].increment();
+        totalNanos.add( nanos );
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : counts) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    /**
+     * The upper bound of the bucket containing the given percentile (between 0 and 100) of the recorded values,
+     * or 0 if nothing has been recorded.
+     */
+    public long getPercentileNanos( double percentile ) {
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts[i].sum();
+            count += snapshot[i];
+        }
+        long rank = (long) Math.ceil( count * percentile / 100 );
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen > 0 && seen >= rank) {
+                return i == BUCKETS - 1 ? Long.MAX_VALUE : ( 1L << i ) - 1;
+            }
+        }
+        return 0;
+    }
+
+    public void reset() {
+        for (LongAdder bucket : counts) {
+            bucket.reset();
+        }
+        totalNanos.reset();
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2005 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.modelcompiler.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The firing metrics of a rule: how many times it fired, how long its consequence block took
+ * and how many facts it inserted, updated and deleted, so that the rules starting a cascade of firings stand out.
+ */
+public class RuleMetrics {
+
+    private final String kieBaseId;
+    private final String ruleName;
+
+    private final LatencyHistogram consequenceLatency = new LatencyHistogram();
+    private final LongAdder inserts = new LongAdder();
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder deletes = new LongAdder();
+
+    RuleMetrics( String kieBaseId, String ruleName ) {
+        this.kieBaseId = kieBaseId;
+        this.ruleName = ruleName;
+    }
+
+    public void recordFiring( long consequenceNanos ) {
+        consequenceLatency.record( consequenceNanos );
+    }
+
+    public void recordInserts( int count ) {
+        inserts.add( count );
+    }
+
+    public void recordUpdates( int count ) {
+        updates.add( count );
+    }
+
+    public void recordDeletes( int count ) {
+        deletes.add( count );
+    }
+
+    public String getKieBaseId() {
+        return kieBaseId;
+    }
+
+    public String getRuleName() {
+        return ruleName;
+    }
+
+    public long getFirings() {
+        return consequenceLatency.getCount();
+    }
+
+    public long getInserts() {
+        return inserts.sum();
+    }
+
+    public long getUpdates() {
+        return updates.sum();
+    }
+
+    public long getDeletes() {
+        return deletes.sum();
+    }
+
+    public long getTotalConsequenceNanos() {
+        return consequenceLatency.getTotalNanos();
+    }
+
+    public long getMedianConsequenceNanos() {
+        return consequenceLatency.getPercentileNanos( 50 );
+    }
+
+    public long getP99ConsequenceNanos() {
+        return consequenceLatency.getPercentileNanos( 99 );
+    }
+
+    public long getMaxConsequenceNanos() {
+        return consequenceLatency.getPercentileNanos( 100 );
+    }
+
+    void reset() {
+        consequenceLatency.reset();
+        inserts.reset();
+        updates.reset();
+        deletes.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "RuleMetrics{" +
+               "kieBaseId='" + kieBaseId + '\'' +
+               ", ruleName='" + ruleName + '\'' +
+               ", firings=" + getFirings() +
+               ", inserts=" + getInserts() +
+               ", updates=" + getUpdates() +
+               ", deletes=" + getDeletes() +
+               ", medianConsequenceNanos=" + getMedianConsequenceNanos() +
+               '}';
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2005 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.modelcompiler.metrics;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.kie.api.KieBase;
+
+/**
+ * Collects the {@link RuleMetrics} of all the rules, keyed by the id of their KieBase and by their fully qualified name,
+ * and exposes them through JMX under the {@link #OBJECT_NAME} name.
+ * As for the {@link ConstraintMetricsRegistry}, whether they are enabled is checked only when the consequences are
+ * created, with -Ddrools.modelcompiler.ruleMetrics=true or {@link #setEnabled(boolean)} before building the KieBase.
+ */
+public class RuleMetricsRegistry implements RuleMetricsMXBean {
+
+    public static final String OBJECT_NAME = "org.drools.modelcompiler:type=RuleMetrics";
+
+    private static final RuleMetricsRegistry INSTANCE = new RuleMetricsRegistry();
+
+    private volatile boolean enabled = Boolean.getBoolean( "drools.modelcompiler.ruleMetrics" );
+    private volatile boolean registeredInJmx;
+
+    private final Map<String, Map<String, RuleMetrics>> metricsByKieBase = new ConcurrentHashMap<>();
+
+    private RuleMetricsRegistry() { }
+
+    public static RuleMetricsRegistry get() {
+        return INSTANCE;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled( boolean enabled ) {
+        this.enabled = enabled;
+    }
+
+    public RuleMetrics getMetrics( String kieBaseId, String ruleName ) {
+        registerInJmx();
+        KieBaseMetricsTracker.purgeCollectedKieBases();
+        return metricsByKieBase.computeIfAbsent( kieBaseId, id -> new ConcurrentHashMap<>() )
+                               .computeIfAbsent( ruleName, name -> new RuleMetrics( kieBaseId, name ) );
+    }
+
+    /**
+     * The metrics of the rules of the given KieBase, or an empty list if it has been built without them.
+     */
+    public List<RuleMetrics> getRuleMetrics( KieBase kieBase ) {
+        return KieBaseMetricsTracker.getKieBaseIds( kieBase ).stream()
+                                    .flatMap( id -> metricsByKieBase.getOrDefault( id, Collections.emptyMap() ).values().stream() )
+                                    .collect( Collectors.toList() );
+    }
+
+    /**
+     * Removes the metrics of the given KieBase not among the used ones, as {@link ConstraintMetricsRegistry#retainMetrics(KieBase, Collection)} does.
+     */
+    public void retainMetrics( KieBase kieBase, Collection<RuleMetrics> usedMetrics ) {
+        for (String kieBaseId : KieBaseMetricsTracker.getKieBaseIds( kieBase )) {
+            Map<String, RuleMetrics> metrics = metricsByKieBase.get( kieBaseId );
+            if (metrics != null) {
+                metrics.values().retainAll( usedMetrics );
+            }
+        }
+    }
+
+    @Override
+    public List<RuleMetrics> getRuleMetrics() {
+        return allMetrics().collect( Collectors.toList() );
+    }
+
+    @Override
+    public List<RuleMetrics> getSlowestRules( int count ) {
+        return getTopRules( count, Comparator.comparingLong( RuleMetrics::getTotalConsequenceNanos ) );
+    }
+
+    @Override
+    public List<RuleMetrics> getMostModifyingRules( int count ) {
+        return getTopRules( count, Comparator.comparingLong( m -> m.getInserts() + m.getUpdates() + m.getDeletes() ) );
+    }
+
+    private List<RuleMetrics> getTopRules( int count, Comparator<RuleMetrics> comparator ) {
+        return allMetrics().sorted( comparator.reversed() )
+                           .limit( count )
+                           .collect( Collectors.toList() );
+    }
+
+    @Override
+    public void reset() {
+        allMetrics().forEach( RuleMetrics::reset );
+    }
+
+    private Stream<RuleMetrics> allMetrics() {
+        KieBaseMetricsTracker.purgeCollectedKieBases();
+        return metricsByKieBase.values().stream().flatMap( metrics -> metrics.values().stream() );
+    }
+
+    boolean hasKieBase( String kieBaseId ) {
+        return metricsByKieBase.containsKey( kieBaseId );
+    }
+
+    void removeKieBase( String kieBaseId ) {
+        metricsByKieBase.remove( kieBaseId );
+    }
+
+    private void registerInJmx() {
+        if (registeredInJmx) {
+            return;
+        }
+        synchronized (this) {
+            if (!registeredInJmx) {
+                MetricsUtil.registerInJmx( this, OBJECT_NAME );
+                registeredInJmx = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2005 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.modelcompiler;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.drools.core.ClockType;
+import org.drools.core.impl.KnowledgeBaseFactory;
+import org.drools.model.Index.ConstraintType;
+import org.drools.model.Model;
+import org.drools.model.Variable;
+import org.drools.model.impl.ModelImpl;
+import org.drools.modelcompiler.builder.KieBaseBuilder;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.kie.api.KieBase;
+import org.kie.api.conf.EventProcessingOption;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.KieSessionConfiguration;
+import org.kie.api.runtime.conf.ClockTypeOption;
+import org.kie.api.time.SessionPseudoClock;
+
+import static org.drools.model.DSL.*;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Runs fixed workloads on the hot paths of the engine and fails when they allocate more than an upper bound of
+ * bytes per operation, so that a change reintroducing garbage on them is caught.
+ * The bounds are the current allocations, that can be printed running with -Ddrools.modelcompiler.printAllocations,
+ * rounded up and multiplied by a generous margin, since the allocations also depend on the JVM running the build and
+ * on its flags: the test doesn't catch small regressions, but it does catch a hot path going back to allocating
+ * objects for each operation.
+ * Each workload is repeated and only the least allocating run counts, to filter out the noise of the JIT.
+ */
+public class AllocationTest {
+
+    private static final int NUMBER_OF_OPERATIONS = 10000;
+    private static final int WARMUP_ROUNDS = 10;
+    private static final int MEASURED_ROUNDS = 5;
+
+    private static final long MAX_BYTES_PER_INSERT = 1024;
+    private static final long MAX_BYTES_PER_JOIN_TEST = 64;
+    private static final long MAX_BYTES_PER_FIRING = 512;
+    private static final long MAX_BYTES_PER_ACCUMULATED_INSERT = 1024;
+    private static final long MAX_BYTES_PER_TEMPORAL_JOIN_TEST = 64;
+    private static final int BOUNDS_MARGIN = 4;
+
+    private static final boolean PRINT_ALLOCATIONS = Boolean.getBoolean( "drools.modelcompiler.printAllocations" );
+
+    private static com.sun.management.ThreadMXBean threadMXBean;
+
+    @BeforeClass
+    public static void checkAllocationsMeasurable() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue( bean instanceof com.sun.management.ThreadMXBean );
+        threadMXBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue( threadMXBean.isThreadAllocatedMemorySupported() );
+        threadMXBean.setThreadAllocatedMemoryEnabled( true );
+    }
+
+    @Test
+    public void testInsert() {
+        Variable<Person> personV = declarationOf( type( Person.class ) );
+        // never matched, so only the insertion itself and the alpha constraint are measured
+        Model model = new ModelImpl().addRule( rule( "R" )
+                                                       .view( expr( "exprNegativeAge", personV, p -> p.getAge() < 0 )
+                                                                      .indexedBy( int.class, ConstraintType.LESS_THAN, Person::getAge, 0 )
+                                                                      .reactOn( "age" ) )
+                                                       .then( on( personV ).execute( p -> { } ) ) );
+        KieBase kieBase = KieBaseBuilder.createKieBaseFromModel( model );
+        List<Person> persons = createPersons();
+
+        assertAllocatedBytesPerOperation( "insert", MAX_BYTES_PER_INSERT,
+                                          kieBase::newKieSession,
+                                          ksession -> persons.forEach( ksession::insert ) );
+    }
+
+    @Test
+    public void testJoin() {
+        Variable<Person> markV = declarationOf( type( Person.class ) );
+        Variable<Person> olderV = declarationOf( type( Person.class ) );
+        Model model = new ModelImpl().addRule( rule( "R" )
+                                                       .view( expr( "exprMark", markV, p -> p.getName().equals( "Mark" ) )
+                                                                      .indexedBy( String.class, ConstraintType.EQUAL, Person::getName, "Mark" )
+                                                                      .reactOn( "name" ),
+                                                              expr( "exprOlder", olderV, markV, (p1, p2) -> p1.getAge() > p2.getAge() )
+                                                                      .indexedBy( int.class, ConstraintType.GREATER_THAN, Person::getAge, Person::getAge )
+                                                                      .reactOn( "age" ) )
+                                                       .then( on( olderV, markV ).execute( (p1, p2) -> { } ) ) );
+        KieBase kieBase = KieBaseBuilder.createKieBaseFromModel( model );
+        List<Person> persons = createPersons();
+        // nobody is older than Mark, so updating him tests all the other persons without producing any match
+        Person mark = new Person( "Mark", 1000 );
+
+        assertAllocatedBytesPerOperation( "join test", MAX_BYTES_PER_JOIN_TEST,
+                                          () -> {
+                                              KieSession ksession = kieBase.newKieSession();
+                                              persons.forEach( ksession::insert );
+                                              ksession.insert( mark );
+                                              ksession.fireAllRules();
+                                              return ksession;
+                                          },
+                                          ksession -> {
+                                              ksession.update( ksession.getFactHandle( mark ), mark );
+                                              ksession.fireAllRules();
+                                          } );
+    }
+
+    @Test
+    public void testFiring() {
+        Variable<Person> personV = declarationOf( type( Person.class ) );
+        Model model = new ModelImpl().addRule( rule( "R" )
+                                                       .view( expr( "exprPositiveAge", personV, p -> p.getAge() >= 0 )
+                                                                      .indexedBy( int.class, ConstraintType.GREATER_OR_EQUAL, Person::getAge, 0 )
+                                                                      .reactOn( "age" ) )
+                                                       .then( on( personV ).execute( p -> { } ) ) );
+        KieBase kieBase = KieBaseBuilder.createKieBaseFromModel( model );
+        List<Person> persons = createPersons();
+
+        assertAllocatedBytesPerOperation( "firing", MAX_BYTES_PER_FIRING,
+                                          () -> {
+                                              KieSession ksession = kieBase.newKieSession();
+                                              persons.forEach( ksession::insert );
+                                              return ksession;
+                                          },
+                                          KieSession::fireAllRules );
+    }
+
+    @Test
+    public void testAccumulate() {
+        Variable<Person> personV = declarationOf( type( Person.class ) );
+        Variable<Integer> sumV = declarationOf( type( Integer.class ) );
+        Model model = new ModelImpl().addRule( rule( "R" )
+                                                       .view( accumulate( expr( "exprAdult", personV, p -> p.getAge() >= 18 ).reactOn( "age" ),
+                                                                          sum( Person::getAge ).as( sumV ) ) )
+                                                       .then( on( sumV ).execute( sum -> { } ) ) );
+        KieBase kieBase = KieBaseBuilder.createKieBaseFromModel( model );
+        List<Person> persons = createPersons();
+
+        assertAllocatedBytesPerOperation( "accumulated insert", MAX_BYTES_PER_ACCUMULATED_INSERT,
+                                          () -> {
+                                              KieSession ksession = kieBase.newKieSession();
+                                              ksession.fireAllRules();
+                                              return ksession;
+                                          },
+                                          ksession -> {
+                                              persons.forEach( ksession::insert );
+                                              ksession.fireAllRules();
+                                          } );
+    }
+
+    @Test
+    public void testTemporalJoin() {
+        Variable<StockTick> drooV = declarationOf( type( StockTick.class ) );
+        Variable<StockTick> acmeV = declarationOf( type( StockTick.class ) );
+        Model model = new ModelImpl().addRule( rule( "R" )
+                                                       .view( expr( "exprDroo", drooV, s -> s.getCompany().equals( "DROO" ) )
+                                                                      .indexedBy( String.class, ConstraintType.EQUAL, StockTick::getCompany, "DROO" )
+                                                                      .reactOn( "company" ),
+                                                              expr( "exprAcme", acmeV, s -> s.getCompany().equals( "ACME" ) )
+                                                                      .indexedBy( String.class, ConstraintType.EQUAL, StockTick::getCompany, "ACME" )
+                                                                      .reactOn( "company" ),
+                                                              expr( "exprAfter", acmeV, drooV, after( 5, TimeUnit.SECONDS, 8, TimeUnit.SECONDS ) ) )
+                                                       .then( execute( () -> { } ) ) );
+        KieBase kieBase = KieBaseBuilder.createKieBaseFromModel( model, EventProcessingOption.STREAM );
+        KieSessionConfiguration sessionConfig = KnowledgeBaseFactory.newKnowledgeSessionConfiguration();
+        sessionConfig.setOption( ClockTypeOption.get( ClockType.PSEUDO_CLOCK.getId() ) );
+
+        // all the ACME ticks come before the DROO one, so inserting it tests all of them without producing any match
+        assertAllocatedBytesPerOperation( "temporal join test", MAX_BYTES_PER_TEMPORAL_JOIN_TEST,
+                                          () -> {
+                                              KieSession ksession = kieBase.newKieSession( sessionConfig, null );
+                                              for (int i = 0; i < NUMBER_OF_OPERATIONS; i++) {
+                                                  ksession.insert( new StockTick( "ACME" ) );
+                                              }
+                                              ksession.fireAllRules();
+                                              ( (SessionPseudoClock) ksession.getSessionClock() ).advanceTime( 1, TimeUnit.SECONDS );
+                                              return ksession;
+                                          },
+                                          ksession -> {
+                                              ksession.insert( new StockTick( "DROO" ) );
+                                              ksession.fireAllRules();
+                                          } );
+    }
+
+    private static List<Person> createPersons() {
+        List<Person> persons = new ArrayList<>( NUMBER_OF_OPERATIONS );
+        for (int i = 0; i < NUMBER_OF_OPERATIONS; i++) {
+            persons.add( new Person( "Person" + i, i % 100 ) );
+        }
+        return persons;
+    }
+
+    private static void assertAllocatedBytesPerOperation( String operation, long maxBytes, Supplier<KieSession> sessionSupplier, Consumer<KieSession> workload ) {
+        long minAllocatedBytes = Long.MAX_VALUE;
+        for (int i = 0; i < WARMUP_ROUNDS + MEASURED_ROUNDS; i++) {
+            KieSession ksession = sessionSupplier.get();
+            try {
+                long allocatedBytes = getAllocatedBytes();
+                workload.accept( ksession );
+                allocatedBytes = getAllocatedBytes() - allocatedBytes;
+                if (i >= WARMUP_ROUNDS) {
+                    minAllocatedBytes = Math.min( minAllocatedBytes, allocatedBytes );
+                }
+            } finally {
+                ksession.dispose();
+            }
+        }
+
+        long bytesPerOperation = minAllocatedBytes / NUMBER_OF_OPERATIONS;
+        if (PRINT_ALLOCATIONS) {
+            System.out.println( "Allocated bytes per " + operation + ": " + bytesPerOperation );
+        }
+        long bound = maxBytes * BOUNDS_MARGIN;
+        assertTrue( "Allocated " + bytesPerOperation + " bytes per " + operation + ", more than the maximum of " + bound,
+                    bytesPerOperation <= bound );
+    }
+
+    private static long getAllocatedBytes() {
+        return threadMXBean.getThreadAllocatedBytes( Thread.currentThread().getId() );
+    }
+}
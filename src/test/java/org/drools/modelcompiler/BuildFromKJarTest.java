@@ -16,15 +16,32 @@
 
 package org.drools.modelcompiler;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 import java.io.File;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.drools.compiler.kie.builder.impl.InternalKieModule;
 import org.drools.compiler.kie.builder.impl.KieBuilderImpl;
+import org.drools.compiler.kie.builder.impl.KieContainerImpl;
+import org.drools.compiler.kie.builder.impl.KieProject;
+import org.drools.compiler.kproject.models.KieBaseModelImpl;
+import org.drools.core.definitions.rule.impl.RuleImpl;
+import org.drools.core.impl.InternalKnowledgeBase;
+import org.drools.modelcompiler.consequence.LambdaConsequence;
 import org.drools.modelcompiler.builder.CanonicalModelKieProject;
+import org.drools.modelcompiler.builder.generator.ChangeTrackingGenerator;
 import org.junit.Test;
+import org.kie.api.KieBase;
 import org.kie.api.KieServices;
 import org.kie.api.builder.KieBuilder;
 import org.kie.api.builder.KieFileSystem;
@@ -38,9 +55,12 @@ import org.kie.api.builder.model.KieSessionModel;
 import org.kie.api.io.Resource;
 import org.kie.api.runtime.KieContainer;
 import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.rule.FactHandle;
 
 public class BuildFromKJarTest {
 
+    private static final long GC_TIMEOUT_SECONDS = 10;
+
     @Test
     public void test() {
         KieServices ks = KieServices.get();
@@ -59,6 +79,235 @@ public class BuildFromKJarTest {
         executeSession( ks, releaseId );
     }
 
+    @Test
+    public void testUpdateKieBase() {
+        KieServices ks = KieServices.get();
+        ReleaseId releaseId1 = ks.newReleaseId( "org.kie", "kjar-update-test", "1.0" );
+        ReleaseId releaseId2 = ks.newReleaseId( "org.kie", "kjar-update-test", "2.0" );
+
+        String rule1 = getRule( "R1", "name == \"Mark\"" );
+        File jarFile1 = createJarFile( ks, releaseId1, getDrl( rule1, getRule( "R2", "age > 38" ) ) );
+        File jarFile2 = createJarFile( ks, releaseId2, getDrl( rule1, getRule( "R2", "age > 36" ), getRule( "R3", "name == \"Edson\"" ) ) );
+
+        KieRepository repo = ks.getRepository();
+        repo.removeKieModule( releaseId1 );
+        repo.removeKieModule( releaseId2 );
+        repo.addKieModule( new CanonicalKieModule( releaseId1, getDefaultKieModuleModel( ks ), jarFile1 ) );
+        CanonicalKieModule kieModule2 = new CanonicalKieModule( releaseId2, getDefaultKieModuleModel( ks ), jarFile2 );
+        repo.addKieModule( kieModule2 );
+
+        InternalKnowledgeBase kieBase = (InternalKnowledgeBase) ks.newKieContainer( releaseId1 ).getKieBase();
+        KieSession kieSession = kieBase.newKieSession();
+        kieSession.insert( new Person( "Mark", 37 ) );
+        kieSession.insert( new Person( "Mario", 40 ) );
+        assertEquals( 2, kieSession.fireAllRules() );
+
+        org.kie.api.definition.rule.Rule r1 = kieBase.getRule( "myrules", "R1" );
+        org.kie.api.definition.rule.Rule r2 = kieBase.getRule( "myrules", "R2" );
+
+        KieProject kieProject2 = ( (KieContainerImpl) ks.newKieContainer( releaseId2 ) ).getKieProject();
+        kieModule2.updateKieBase( kieBase, (KieBaseModelImpl) kieProject2.getKieBaseModel( "kbase" ), kieProject2 );
+
+        assertSame( r1, kieBase.getRule( "myrules", "R1" ) );
+        assertNotSame( r2, kieBase.getRule( "myrules", "R2" ) );
+
+        // only the changed R2 fires again for the facts already in the session
+        assertEquals( 2, kieSession.fireAllRules() );
+    }
+
+    @Test
+    public void testUpdateKieBaseWithRemovedPackage() {
+        KieServices ks = KieServices.get();
+        ReleaseId releaseId1 = ks.newReleaseId( "org.kie", "kjar-removed-package-test", "1.0" );
+        ReleaseId releaseId2 = ks.newReleaseId( "org.kie", "kjar-removed-package-test", "2.0" );
+
+        String rule1 = getRule( "R1", "name == \"Mark\"" );
+        File jarFile1 = createJarFile( ks, releaseId1, getDrl( rule1 ), getDrlInPackage( "otherrules", getRule( "R2", "age > 30" ) ) );
+        File jarFile2 = createJarFile( ks, releaseId2, getDrl( rule1 ) );
+
+        KieRepository repo = ks.getRepository();
+        repo.removeKieModule( releaseId1 );
+        repo.removeKieModule( releaseId2 );
+        repo.addKieModule( new CanonicalKieModule( releaseId1, getDefaultKieModuleModel( ks ), jarFile1 ) );
+        CanonicalKieModule kieModule2 = new CanonicalKieModule( releaseId2, getDefaultKieModuleModel( ks ), jarFile2 );
+        repo.addKieModule( kieModule2 );
+
+        InternalKnowledgeBase kieBase = (InternalKnowledgeBase) ks.newKieContainer( releaseId1 ).getKieBase();
+        KieSession kieSession = kieBase.newKieSession();
+        kieSession.insert( new Person( "Mark", 37 ) );
+        kieSession.insert( new Person( "Mario", 40 ) );
+        assertEquals( 3, kieSession.fireAllRules() );
+
+        org.kie.api.definition.rule.Rule r1 = kieBase.getRule( "myrules", "R1" );
+        assertNotNull( kieBase.getKiePackage( "otherrules" ) );
+
+        KieProject kieProject2 = ( (KieContainerImpl) ks.newKieContainer( releaseId2 ) ).getKieProject();
+        kieModule2.updateKieBase( kieBase, (KieBaseModelImpl) kieProject2.getKieBaseModel( "kbase" ), kieProject2 );
+
+        assertNull( kieBase.getKiePackage( "otherrules" ) );
+        assertSame( r1, kieBase.getRule( "myrules", "R1" ) );
+
+        // R2 has been removed together with its package and doesn't fire for the new facts
+        kieSession.insert( new Person( "Edson", 35 ) );
+        assertEquals( 0, kieSession.fireAllRules() );
+    }
+
+    @Test
+    public void testUpdateKieBaseWithRenamedPackage() {
+        KieServices ks = KieServices.get();
+        ReleaseId releaseId1 = ks.newReleaseId( "org.kie", "kjar-renamed-package-test", "1.0" );
+        ReleaseId releaseId2 = ks.newReleaseId( "org.kie", "kjar-renamed-package-test", "2.0" );
+
+        String rule1 = getRule( "R1", "name == \"Mark\"" );
+        String rule2 = getRule( "R2", "age > 38" );
+        File jarFile1 = createJarFile( ks, releaseId1, getDrl( rule1, rule2 ) );
+        File jarFile2 = createJarFile( ks, releaseId2, getDrlInPackage( "renamedrules", rule1, rule2 ) );
+
+        KieRepository repo = ks.getRepository();
+        repo.removeKieModule( releaseId1 );
+        repo.removeKieModule( releaseId2 );
+        repo.addKieModule( new CanonicalKieModule( releaseId1, getDefaultKieModuleModel( ks ), jarFile1 ) );
+        CanonicalKieModule kieModule2 = new CanonicalKieModule( releaseId2, getDefaultKieModuleModel( ks ), jarFile2 );
+        repo.addKieModule( kieModule2 );
+
+        InternalKnowledgeBase kieBase = (InternalKnowledgeBase) ks.newKieContainer( releaseId1 ).getKieBase();
+        KieSession kieSession = kieBase.newKieSession();
+        kieSession.insert( new Person( "Mark", 37 ) );
+        kieSession.insert( new Person( "Mario", 40 ) );
+        assertEquals( 2, kieSession.fireAllRules() );
+
+        KieProject kieProject2 = ( (KieContainerImpl) ks.newKieContainer( releaseId2 ) ).getKieProject();
+        kieModule2.updateKieBase( kieBase, (KieBaseModelImpl) kieProject2.getKieBaseModel( "kbase" ), kieProject2 );
+
+        assertNull( kieBase.getKiePackage( "myrules" ) );
+        assertEquals( 1, kieBase.getKiePackages().size() );
+        assertNotNull( kieBase.getRule( "renamedrules", "R1" ) );
+        assertNotNull( kieBase.getRule( "renamedrules", "R2" ) );
+
+        // the rules of the renamed package are new rules, so they fire again for the facts already in the session
+        assertEquals( 2, kieSession.fireAllRules() );
+    }
+
+    @Test
+    public void testIncludedKieBase() {
+        KieServices ks = KieServices.get();
+        ReleaseId releaseId = ks.newReleaseId( "org.kie", "kjar-include-test", "1.0" );
+
+        KieModuleModel kproj = ks.newKieModuleModel();
+        kproj.newKieBaseModel( "kbase1" ).addPackage( "myrules" ).setDefault( true )
+                .newKieSessionModel( "ksession1" ).setDefault( true );
+        kproj.newKieBaseModel( "kbase2" ).addPackage( "otherrules" ).addInclude( "kbase1" )
+                .newKieSessionModel( "ksession2" );
+
+        File jarFile = createJarFile( ks, releaseId, kproj,
+                                      getDrl( getRule( "R1", "name == \"Mark\"" ) ),
+                                      getDrlInPackage( "otherrules", getRule( "R2", "age > 30" ) ) );
+
+        KieRepository repo = ks.getRepository();
+        repo.removeKieModule( releaseId );
+        repo.addKieModule( new CanonicalKieModule( releaseId, kproj, jarFile ) );
+
+        KieContainer kieContainer = ks.newKieContainer( releaseId );
+
+        KieBase kieBase1 = kieContainer.getKieBase( "kbase1" );
+        assertNotNull( kieBase1.getRule( "myrules", "R1" ) );
+        assertNull( kieBase1.getKiePackage( "otherrules" ) );
+
+        // kbase2 includes kbase1, so it also contains the rules of its package
+        KieBase kieBase2 = kieContainer.getKieBase( "kbase2" );
+        assertNotNull( kieBase2.getRule( "myrules", "R1" ) );
+        assertNotNull( kieBase2.getRule( "otherrules", "R2" ) );
+
+        KieSession kieSession = kieContainer.newKieSession( "ksession2" );
+        kieSession.insert( new Person( "Mark", 37 ) );
+        assertEquals( 2, kieSession.fireAllRules() );
+    }
+
+    @Test
+    public void testChangeTracking() throws Exception {
+        KieServices ks = KieServices.get();
+        ReleaseId releaseId = ks.newReleaseId( "org.kie", "kjar-change-tracking-test", "1.0" );
+
+        File jarFile;
+        System.setProperty( ChangeTrackingGenerator.GENERATE_CHANGE_TRACKING_PROPERTY, "true" );
+        try {
+            jarFile = createJarFile( ks, releaseId, getDrl( getRule( "R", "age > 30" ) ) );
+        } finally {
+            System.clearProperty( ChangeTrackingGenerator.GENERATE_CHANGE_TRACKING_PROPERTY );
+        }
+
+        KieRepository repo = ks.getRepository();
+        repo.removeKieModule( releaseId );
+        repo.addKieModule( new CanonicalKieModule( releaseId, getDefaultKieModuleModel( ks ), jarFile ) );
+
+        KieContainer kieContainer = ks.newKieContainer( releaseId );
+        Class<?> trackedClass = kieContainer.getClassLoader().loadClass( ChangeTrackingGenerator.getChangeTrackedClassName( Person.class ) );
+        Person mark = (Person) trackedClass.getConstructor( String.class, int.class ).newInstance( "Mark", 37 );
+
+        KieSession kieSession = kieContainer.newKieSession();
+        FactHandle fh = kieSession.insert( mark );
+        assertEquals( 1, kieSession.fireAllRules() );
+
+        // R doesn't react on the name, so the tracked update doesn't reevaluate it
+        mark.setName( "Mario" );
+        ChangeTracked.update( kieSession, fh, mark );
+        assertEquals( 0, kieSession.fireAllRules() );
+
+        mark.setAge( 40 );
+        ChangeTracked.update( kieSession, fh, mark );
+        assertEquals( 1, kieSession.fireAllRules() );
+
+        // while a plain update propagates a modification of all the properties
+        mark.setName( "Edson" );
+        kieSession.update( fh, mark );
+        assertEquals( 1, kieSession.fireAllRules() );
+    }
+
+    @Test
+    public void testRetiredKieModuleIsGarbageCollected() throws Exception {
+        KieServices ks = KieServices.get();
+        ReleaseId releaseId = ks.newReleaseId( "org.kie", "kjar-gc-test", "1.0" );
+
+        File jarFile = createJarFile( ks, releaseId );
+
+        KieRepository repo = ks.getRepository();
+        repo.removeKieModule( releaseId );
+        repo.addKieModule( new CanonicalKieModule( releaseId, getDefaultKieModuleModel( ks ), jarFile ) );
+
+        ReferenceQueue<ClassLoader> collectedClassLoaders = new ReferenceQueue<>();
+        WeakReference<ClassLoader> kjarClassLoader = useAndDisposeKieContainer( ks, releaseId, collectedClassLoaders );
+        repo.removeKieModule( releaseId );
+
+        // System.gc() is only a hint, so it is repeated until the class loader is collected or the time is over
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos( GC_TIMEOUT_SECONDS );
+        Reference<?> collected = null;
+        while (collected == null && System.nanoTime() < deadline) {
+            System.gc();
+            collected = collectedClassLoaders.remove( 100 );
+        }
+        assertNull( "The class loader of a retired kjar has not been garbage collected within " + GC_TIMEOUT_SECONDS +
+                    " seconds: something still references the classes of the kjar", kjarClassLoader.get() );
+    }
+
+    private WeakReference<ClassLoader> useAndDisposeKieContainer( KieServices ks, ReleaseId releaseId, ReferenceQueue<ClassLoader> queue ) {
+        KieContainer kieContainer = ks.newKieContainer( releaseId );
+        KieBase kieBase = kieContainer.getKieBase();
+
+        KieSession kieSession = kieBase.newKieSession();
+        kieSession.insert(new Person( "Mark", 37) );
+        kieSession.insert(new Person("Mario", 40));
+        assertEquals( 1, kieSession.fireAllRules() );
+        kieSession.dispose();
+
+        // the consequence is a lambda defined in the Rules class generated into the kjar
+        RuleImpl rule = (RuleImpl) kieBase.getRule( "myrules", "beta" );
+        ClassLoader kjarClassLoader = ( (LambdaConsequence) rule.getConsequence() ).getModelConsequence().getBlock().getClass().getClassLoader();
+        assertSame( CanonicalKieModule.KieProjectClassLoader.class, kjarClassLoader.getClass() );
+
+        kieContainer.dispose();
+        return new WeakReference<>( kjarClassLoader, queue );
+    }
+
     private void executeSession( KieServices ks, ReleaseId releaseId ) {
         KieContainer kieContainer = ks.newKieContainer( releaseId );
         KieSession kieSession = kieContainer.newKieSession();
@@ -70,16 +319,26 @@ public class BuildFromKJarTest {
     }
 
     private File createJarFile(KieServices ks, ReleaseId releaseId) {
+        return createJarFile( ks, releaseId, getRule() );
+    }
+
+    private File createJarFile(KieServices ks, ReleaseId releaseId, String... drls) {
+        return createJarFile( ks, releaseId, getDefaultKieModuleModel( ks ), drls );
+    }
+
+    private File createJarFile(KieServices ks, ReleaseId releaseId, KieModuleModel kproj, String... drls) {
 
         KieFileSystem kfs = ks.newKieFileSystem();
-        kfs.writeKModuleXML(getDefaultKieModuleModel(ks).toXML());
+        kfs.writeKModuleXML(kproj.toXML());
         kfs.writePomXML(KJARUtils.getPom(releaseId));
 
         String javaSrc = Person.class.getCanonicalName().replace( '.', File.separatorChar ) + ".java";
         Resource javaResource = ks.getResources().newFileSystemResource( "src/test/java/" + javaSrc );
         kfs.write( "src/main/java/" + javaSrc, javaResource );
 
-        kfs.write("src/main/resources/rule.drl", getRule());
+        for (int i = 0; i < drls.length; i++) {
+            kfs.write("src/main/resources/rule" + i + ".drl", drls[i]);
+        }
 
         KieBuilder kieBuilder = ks.newKieBuilder( kfs );
         List<Message> messages = ( (KieBuilderImpl) kieBuilder ).buildAll( CanonicalModelKieProject::new )
@@ -112,4 +371,21 @@ public class BuildFromKJarTest {
                "end";
     }
 
+    private String getDrl( String... rules ) {
+        return getDrlInPackage( "myrules", rules );
+    }
+
+    private String getDrlInPackage( String pkg, String... rules ) {
+        return "package " + pkg + ";\n" +
+               "import " + Person.class.getCanonicalName() + ";\n" +
+               String.join( "", rules );
+    }
+
+    private String getRule( String name, String constraint ) {
+        return "rule " + name + " when\n" +
+               "  $p : Person(" + constraint + ")\n" +
+               "then\n" +
+               "  System.out.println(\"" + name + " fired for \" + $p.getName());\n" +
+               "end\n";
+    }
 }
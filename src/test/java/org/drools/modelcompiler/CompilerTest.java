@@ -52,6 +52,7 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
+import static org.drools.modelcompiler.CompilerTestRules.*;
 import static org.junit.Assert.*;
 
 @RunWith(Parameterized.class)
@@ -103,8 +104,7 @@ public class CompilerTest {
                 "import " + Person.class.getCanonicalName() + ";" +
                 "rule R when\n" +
                 "  $r : Result()\n" +
-                "  $p1 : Person(name == \"Mark\")\n" +
-                "  $p2 : Person(name != \"Mark\", age > $p1.age)\n" +
+                BETA_PATTERNS +
                 "then\n" +
                 "  $r.setValue($p2.getName() + \" is older than \" + $p1.getName());\n" +
                 "end";
@@ -185,10 +185,7 @@ public class CompilerTest {
         String str =
                 "import " + Person.class.getCanonicalName() + ";" +
                 "rule R when\n" +
-                "  $p : Person(name == \"Mark\") or\n" +
-                "  ( $mark : Person(name == \"Mark\")\n" +
-                "    and\n" +
-                "    $p : Person(age > $mark.age) )\n" +
+                OR_PATTERNS +
                 "  $s: String(this == $p.name)\n" +
                 "then\n" +
                 "  System.out.println(\"Found: \" + $s);\n" +
@@ -412,11 +409,7 @@ public class CompilerTest {
     public void testSimpleModify() {
         String str =
                 "import " + Person.class.getCanonicalName() + ";" +
-                "rule R when\n" +
-                "  $p : Person( name.length == 4 )\n" +
-                "then\n" +
-                "  modify($p) { setAge($p.getAge()+1) }\n" +
-                "end";
+                MODIFY_RULE;
 
         KieSession ksession = getKieSession( str );
 
@@ -436,8 +429,7 @@ public class CompilerTest {
         String str =
                 "import " + StockTick.class.getCanonicalName() + ";" +
                 "rule R when\n" +
-                "    $a : StockTick( company == \"DROO\" )\n" +
-                "    $b : StockTick( company == \"ACME\", this after[5s,8s] $a )\n" +
+                AFTER_PATTERNS +
                 "then\n" +
                 "  System.out.println(\"fired\");\n" +
                 "end\n";
@@ -505,7 +497,7 @@ public class CompilerTest {
         String str =
                 "import " + StockTick.class.getCanonicalName() + ";\n" +
                 "rule R when\n" +
-                "    $a : StockTick( company == \"DROO\" ) over window:length( 2 )\n" +
+                SLIDING_WINDOW_PATTERN +
                 "then\n" +
                 "  System.out.println(\"fired\");\n" +
                 "end\n";
@@ -538,7 +530,7 @@ public class CompilerTest {
                 "import " + Person.class.getCanonicalName() + ";" +
                 "import " + Result.class.getCanonicalName() + ";" +
                 "rule R when\n" +
-                "  not( Person( name.length == 4 ) )\n" +
+                NOT_PATTERN +
                 "then\n" +
                 "  insert(new Result(\"ok\"));\n" +
                 "end";
@@ -585,7 +577,7 @@ public class CompilerTest {
                 "import " + Person.class.getCanonicalName() + ";" +
                 "import " + Result.class.getCanonicalName() + ";" +
                 "rule R when\n" +
-                "  exists Person( name.length == 5 )\n" +
+                EXISTS_PATTERN +
                 "then\n" +
                 "  insert(new Result(\"ok\"));\n" +
                 "end";
@@ -678,9 +670,7 @@ public class CompilerTest {
     public void testQuery() {
         String str =
                 "import " + Person.class.getCanonicalName() + ";" +
-                "query olderThan( int $age )\n" +
-                "    $p : Person(age > $age)\n" +
-                "end ";
+                OLDER_THAN_QUERY;
 
         KieSession ksession = getKieSession( str );
 
@@ -756,9 +746,7 @@ public class CompilerTest {
                 "import " + Person.class.getCanonicalName() + ";" +
                 "import " + Result.class.getCanonicalName() + ";" +
                 "rule X when\n" +
-                 "  accumulate ( $p: Person ( getName().startsWith(\"M\")); \n" +
-                "                $sum : sum($p.getAge())  \n" +
-                "              )                          \n" +
+                ACCUMULATE_PATTERN +
                 "then\n" +
                 "  insert(new Result($sum));\n" +
                 "end";
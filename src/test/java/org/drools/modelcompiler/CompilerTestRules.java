@@ -0,0 +1,69 @@
+/*
+ * Copyright 2005 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.drools.modelcompiler;
+
+/**
+ * The DRL of the language constructs tested by the CompilerTest, shared with the DifferentialBenchmark so that the
+ * benchmark compares the DRL engine and the executable model on exactly the tested constructs.
+ * The patterns are kept apart from the rules using them, since the tests add to them the facts and the consequences
+ * they need for their assertions, while the benchmark runs them with an empty consequence.
+ */
+public class CompilerTestRules {
+
+    public static final String BETA_PATTERNS =
+            "  $p1 : Person(name == \"Mark\")\n" +
+            "  $p2 : Person(name != \"Mark\", age > $p1.age)\n";
+
+    public static final String OR_PATTERNS =
+            "  $p : Person(name == \"Mark\") or\n" +
+            "  ( $mark : Person(name == \"Mark\")\n" +
+            "    and\n" +
+            "    $p : Person(age > $mark.age) )\n";
+
+    public static final String NOT_PATTERN =
+            "  not( Person( name.length == 4 ) )\n";
+
+    public static final String EXISTS_PATTERN =
+            "  exists Person( name.length == 5 )\n";
+
+    public static final String ACCUMULATE_PATTERN =
+            "  accumulate ( $p: Person ( getName().startsWith(\"M\")); \n" +
+            "                $sum : sum($p.getAge())  \n" +
+            "              )                          \n";
+
+    public static final String MODIFY_RULE =
+            "rule R when\n" +
+            "  $p : Person( name.length == 4 )\n" +
+            "then\n" +
+            "  modify($p) { setAge($p.getAge()+1) }\n" +
+            "end";
+
+    public static final String OLDER_THAN_QUERY =
+            "query olderThan( int $age )\n" +
+            "    $p : Person(age > $age)\n" +
+            "end ";
+
+    public static final String AFTER_PATTERNS =
+            "    $a : StockTick( company == \"DROO\" )\n" +
+            "    $b : StockTick( company == \"ACME\", this after[5s,8s] $a )\n";
+
+    public static final String SLIDING_WINDOW_PATTERN =
+            "    $a : StockTick( company == \"DROO\" ) over window:length( 2 )\n";
+
+    private CompilerTestRules() { }
+}
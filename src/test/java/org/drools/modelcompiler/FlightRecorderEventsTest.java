@@ -0,0 +1,96 @@
+/*
+ * Copyright 2005 JBoss Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.drools.modelcompiler;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.drools.model.Rule;
+import org.drools.model.Variable;
+import org.drools.model.impl.ModelImpl;
+import org.drools.modelcompiler.builder.KieBaseBuilder;
+import org.drools.modelcompiler.jfr.FlightRecorderEvents;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.kie.api.runtime.KieSession;
+
+import static org.drools.model.DSL.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Records the Flight Recorder events of the model compiler. Skipped on the JVMs without the Flight Recorder,
+ * where the events are no-ops.
+ */
+public class FlightRecorderEventsTest {
+
+    @BeforeClass
+    public static void checkFlightRecorderAvailable() {
+        assumeTrue( FlightRecorderEvents.isAvailable() );
+    }
+
+    @Test
+    public void testEventsRecorded() throws Exception {
+        Variable<Person> personV = declarationOf( type( Person.class ) );
+        Variable<Integer> sumV = declarationOf( type( Integer.class ) );
+
+        Rule rule = rule( "jfr" )
+                .view( accumulate( expr( "exprA", personV, p -> p.getAge() > 30 ), sum( Person::getAge ).as( sumV ) ) )
+                .then( on( sumV ).execute( sum -> { } ) );
+
+        Path recordingFile = Files.createTempFile( "model-compiler", ".jfr" );
+        try (Recording recording = new Recording()) {
+            recording.enable( "org.drools.modelcompiler.BuildPhase" );
+            recording.enable( "org.drools.modelcompiler.RuleFiring" ).withThreshold( Duration.ZERO );
+            recording.enable( "org.drools.modelcompiler.AccumulateResult" ).withThreshold( Duration.ZERO );
+            recording.start();
+
+            KieSession ksession = KieBaseBuilder.createKieBaseFromModel( new ModelImpl().addRule( rule ) ).newKieSession();
+            ksession.insert( new Person( "Mark", 37 ) );
+            ksession.insert( new Person( "Mario", 40 ) );
+            assertEquals( 1, ksession.fireAllRules() );
+
+            recording.stop();
+            recording.dump( recordingFile );
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents( recordingFile );
+            assertTrue( events.stream().anyMatch( e -> e.getEventType().getName().equals( "org.drools.modelcompiler.BuildPhase" ) &&
+                                                       e.getString( "phase" ).equals( FlightRecorderEvents.ADD_MODEL ) ) );
+            assertTrue( events.stream().anyMatch( e -> e.getEventType().getName().equals( "org.drools.modelcompiler.RuleFiring" ) &&
+                                                       e.getString( "ruleName" ).endsWith( "jfr" ) ) );
+            assertTrue( events.stream().anyMatch( e -> e.getEventType().getName().equals( "org.drools.modelcompiler.AccumulateResult" ) ) );
+        } finally {
+            Files.delete( recordingFile );
+        }
+    }
+
+    @Test
+    public void testNoEventsCreatedWithoutRecording() {
+        // no recording is running, so the runtime events are disabled and never allocated
+        assertFalse( FlightRecorderEvents.isRuleFiringEnabled() );
+        assertFalse( FlightRecorderEvents.isAccumulateResultEnabled() );
+        assertNull( FlightRecorderEvents.beginBuildPhase( FlightRecorderEvents.ADD_MODEL, "model" ) );
+    }
+}
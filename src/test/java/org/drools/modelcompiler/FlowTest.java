@@ -16,27 +16,49 @@
 
 package org.drools.modelcompiler;
 
+import org.drools.compiler.kproject.models.KieBaseModelImpl;
+import org.drools.core.base.ClassObjectType;
+import org.drools.core.definitions.rule.impl.RuleImpl;
+import org.drools.core.impl.InternalKnowledgeBase;
 import org.drools.core.reteoo.AlphaNode;
+import org.drools.core.reteoo.ObjectTypeNode;
 import org.drools.javaparser.JavaParser;
 import org.drools.model.Global;
 import org.drools.model.Index.ConstraintType;
 import org.drools.model.Model;
+import org.drools.model.Query;
 import org.drools.model.Query1;
 import org.drools.model.Query2;
 import org.drools.model.Rule;
+import org.drools.model.Source;
 import org.drools.model.Variable;
 import org.drools.model.impl.ModelImpl;
 import org.drools.modelcompiler.builder.KieBaseBuilder;
+import org.drools.modelcompiler.consequence.MeteredLambdaConsequence;
+import org.drools.modelcompiler.metrics.ConstraintMetrics;
+import org.drools.modelcompiler.metrics.ConstraintMetricsRegistry;
+import org.drools.modelcompiler.metrics.KieBaseMetricsTracker;
+import org.drools.modelcompiler.metrics.RuleMetrics;
+import org.drools.modelcompiler.metrics.RuleMetricsRegistry;
 import org.junit.Test;
 import org.kie.api.KieBase;
+import org.kie.api.KieServices;
 import org.kie.api.runtime.ClassObjectFilter;
 import org.kie.api.runtime.KieSession;
 import org.kie.api.runtime.rule.FactHandle;
 import org.kie.api.runtime.rule.QueryResults;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.counting;
+import static java.util.stream.Collectors.groupingBy;
 import static org.drools.model.DSL.*;
+import static org.drools.modelcompiler.RuleSupplier.ruleSupplier;
 import static org.junit.Assert.*;
 
 public class FlowTest {
@@ -494,4 +516,371 @@ public class FlowTest {
         assertEquals( 1, results.size() );
         assertEquals( "Mario", results.iterator().next().getValue() );
     }
+
+    @Test
+    public void testLazyModelBuildsOnlyRulesInKieBase() {
+        Result result = new Result();
+        Variable<Person> markV = declarationOf( type( Person.class ) );
+
+        List<RuleSupplier> ruleSuppliers = asList(
+                ruleSupplier( "included", "org.included", null,
+                              () -> rule( "org.included", "included" )
+                                      .view( expr( "exprA", markV, p -> p.getName().equals( "Mark" ) ) )
+                                      .then( on( markV ).execute( p -> result.value = p.getName() ) ) ),
+                ruleSupplier( "excluded", "org.excluded", null,
+                              () -> { throw new IllegalStateException( "A rule not in the KieBase must not be built" ); } ) );
+
+        Model model = lazyModel( ruleSuppliers );
+
+        KieBaseModelImpl kBaseModel = (KieBaseModelImpl) KieServices.get().newKieModuleModel()
+                                                                    .newKieBaseModel( "kbase" )
+                                                                    .addPackage( "org.included" );
+        KieBase kieBase = new KieBaseBuilder( kBaseModel, getClass().getClassLoader(), null ).addModel( model ).createKieBase();
+
+        KieSession ksession = kieBase.newKieSession();
+
+        ksession.insert(new Person("Mark", 37));
+        ksession.fireAllRules();
+
+        assertEquals("Mark", result.value);
+    }
+
+    @Test
+    public void testParallelBuild() {
+        Variable<Person> personV = declarationOf( type( Person.class ) );
+        Variable<Person> adultV = declarationOf( type( Person.class ) );
+        Source<Person> persons = sourceOf( "persons", type( Person.class ) );
+
+        List<Rule> rules = new ArrayList<>();
+        int rulesNr = KiePackagesBuilder.PARALLEL_BUILD_THRESHOLD * 2;
+        for (int i = 0; i < rulesNr; i++) {
+            int age = i;
+            rules.add( rule( "age_" + i )
+                               .view( expr( "exprAge" + i, personV, p -> p.getAge() >= age )
+                                              .indexedBy( int.class, ConstraintType.GREATER_OR_EQUAL, Person::getAge, age ) )
+                               .then( on( personV ).execute( p -> { } ) ) );
+            // the rules of a unit resolve the unit class through the type resolver of their package
+            rules.add( rule( "org.drools.units", "adult_" + i ).unit( RuleUnitTest.AdultUnit.class )
+                               .view( from( persons ).filter( adultV, p -> p.getAge() > age ) )
+                               .then( on( adultV ).execute( p -> { } ) ) );
+        }
+
+        ModelImpl model = new ModelImpl();
+        rules.forEach( model::addRule );
+        KieBase kieBase = KieBaseBuilder.createKieBaseFromModel( model );
+        assertEquals( rules.size(), kieBase.getKiePackages().stream().mapToInt( pkg -> pkg.getRules().size() ).sum() );
+
+        KieSession ksession = kieBase.newKieSession();
+        ksession.insert( new Person( "Mark", 37 ) );
+        assertEquals( 38, ksession.fireAllRules() );
+
+        // the same rules split in models below the threshold are built sequentially, and must produce the same network
+        KieBaseBuilder sequentialBuilder = new KieBaseBuilder();
+        int modelSize = Math.max( 1, KiePackagesBuilder.PARALLEL_BUILD_THRESHOLD - 1 );
+        for (int i = 0; i < rules.size(); i += modelSize) {
+            ModelImpl sequentialModel = new ModelImpl();
+            rules.subList( i, Math.min( rules.size(), i + modelSize ) ).forEach( sequentialModel::addRule );
+            sequentialBuilder.addModel( sequentialModel );
+        }
+        assertEquals( countNodesByType( sequentialBuilder.createKieBase() ), countNodesByType( kieBase ) );
+    }
+
+    private static AlphaNode getAlphaNode( InternalKnowledgeBase kieBase, Class<?> type ) {
+        return ReteDumper.visitRete( kieBase.getRete(), ( ident, node ) -> { } ).stream()
+                         .filter( AlphaNode.class::isInstance )
+                         .map( AlphaNode.class::cast )
+                         .filter( node -> ( (ClassObjectType) ( (ObjectTypeNode) node.getParentObjectSource() ).getObjectType() ).getClassType() == type )
+                         .findFirst()
+                         .orElseThrow( () -> new AssertionError( "No alpha node for " + type.getSimpleName() ) );
+    }
+
+    private static Map<String, Long> countNodesByType( KieBase kieBase ) {
+        return ReteDumper.visitRete( ( (InternalKnowledgeBase) kieBase ).getRete(), ( ident, node ) -> { } ).stream()
+                         .collect( groupingBy( node -> node.getClass().getSimpleName(), counting() ) );
+    }
+
+    @Test
+    public void testUpdateKieBase() {
+        List<String> fired = new ArrayList<>();
+        Variable<Person> personV = declarationOf( type( Person.class ) );
+
+        RuleSupplier unchanged = ruleSupplier( "unchanged", "org.mypkg", null, "fingerprint1",
+                                               () -> rule( "org.mypkg", "unchanged" )
+                                                       .view( expr( "exprA", personV, p -> p.getAge() > 30 ) )
+                                                       .then( on( personV ).execute( p -> fired.add( "unchanged " + p.getName() ) ) ) );
+        RuleSupplier removed = ruleSupplier( "removed", "org.mypkg", null, "fingerprint2",
+                                             () -> rule( "org.mypkg", "removed" )
+                                                     .view( expr( "exprB", personV, p -> p.getAge() < 30 ) )
+                                                     .then( on( personV ).execute( p -> fired.add( "removed " + p.getName() ) ) ) );
+        RuleSupplier added = ruleSupplier( "added", "org.mypkg", null, "fingerprint3",
+                                           () -> rule( "org.mypkg", "added" )
+                                                   .view( expr( "exprC", personV, p -> p.getName().startsWith( "M" ) ) )
+                                                   .then( on( personV ).execute( p -> fired.add( "added " + p.getName() ) ) ) );
+
+        InternalKnowledgeBase kieBase = new KieBaseBuilder().addModel( lazyModel( asList( unchanged, removed ) ) ).createKieBase();
+        KieSession ksession = kieBase.newKieSession();
+
+        ksession.insert(new Person("Mark", 37));
+        ksession.insert(new Person("Edson", 25));
+        ksession.fireAllRules();
+        assertEquals( 2, fired.size() );
+        assertTrue( fired.containsAll( asList( "unchanged Mark", "removed Edson" ) ) );
+
+        org.kie.api.definition.rule.Rule unchangedRule = kieBase.getRule( "org.mypkg", "unchanged" );
+        new KieBaseBuilder().addModel( lazyModel( asList( unchanged, added ) ) ).updateKieBase( kieBase );
+
+        assertSame( unchangedRule, kieBase.getRule( "org.mypkg", "unchanged" ) );
+        assertNull( kieBase.getRule( "org.mypkg", "removed" ) );
+
+        fired.clear();
+        ksession.insert(new Person("Mario", 40));
+        ksession.fireAllRules();
+        assertEquals( 3, fired.size() );
+        assertTrue( fired.containsAll( asList( "added Mark", "added Mario", "unchanged Mario" ) ) );
+    }
+
+    @Immutable
+    public static class Price {
+        private final String symbol;
+        private final double value;
+
+        public Price( String symbol, double value ) {
+            this.symbol = symbol;
+            this.value = value;
+        }
+
+        public String getSymbol() {
+            return symbol;
+        }
+
+        public double getValue() {
+            return value;
+        }
+    }
+
+    @Test
+    public void testImmutableFact() {
+        Result result = new Result();
+        Variable<Price> priceV = declarationOf( type( Price.class ) );
+
+        Variable<Person> personV = declarationOf( type( Person.class ) );
+
+        Rule rule = rule( "immutable" )
+                .view( expr( "exprA", priceV, p -> p.getValue() > 10 ).reactOn( "value" ) )
+                .then( on( priceV ).execute( p -> result.setValue( p.getSymbol() ) ) );
+        Rule mutableRule = rule( "mutable" )
+                .view( expr( "exprB", personV, p -> p.getAge() > 10 ).reactOn( "age" ) )
+                .then( execute( () -> { } ) );
+
+        InternalKnowledgeBase kieBase = KieBaseBuilder.createKieBaseFromModel( new ModelImpl().addRule( rule ).addRule( mutableRule ) );
+        assertFalse( kieBase.getExactTypeDeclaration( Price.class ).isPropertyReactive() );
+        assertTrue( kieBase.getExactTypeDeclaration( Person.class ).isPropertyReactive() );
+
+        // the immutable type is excluded from the watch masks: its alpha node listens to all the properties
+        // regardless of the reactOn, while the one of the mutable type only listens to the age
+        assertTrue( getAlphaNode( kieBase, Price.class ).getDeclaredMask().isAllSet() );
+        assertFalse( getAlphaNode( kieBase, Person.class ).getDeclaredMask().isAllSet() );
+
+        KieSession ksession = kieBase.newKieSession();
+        ksession.insert( new Price( "ACME", 5 ) );
+        ksession.insert( new Price( "DROO", 15 ) );
+        assertEquals( 1, ksession.fireAllRules() );
+        assertEquals( "DROO", result.getValue() );
+    }
+
+    @Test
+    public void testConstraintMetrics() {
+        ConstraintMetricsRegistry metricsRegistry = ConstraintMetricsRegistry.get();
+        metricsRegistry.setEnabled( true );
+        try {
+            metricsRegistry.reset();
+
+            Variable<Person> markV = declarationOf( type( Person.class ) );
+            Variable<Person> olderV = declarationOf( type( Person.class ) );
+
+            Rule rule = rule( "metrics" )
+                    .view( expr( "exprMetricsMark", markV, p -> p.getName().equals( "Mark" ) ),
+                           expr( "exprMetricsOlder", olderV, markV, (p1, p2) -> p1.getAge() > p2.getAge() ) )
+                    .then( execute( () -> { } ) );
+
+            KieBase kieBase = KieBaseBuilder.createKieBaseFromModel( new ModelImpl().addRule( rule ) );
+            KieSession ksession = kieBase.newKieSession();
+            ksession.insert( new Person( "Mark", 37 ) );
+            ksession.insert( new Person( "Edson", 35 ) );
+            ksession.insert( new Person( "Mario", 40 ) );
+            assertEquals( 1, ksession.fireAllRules() );
+
+            ConstraintMetrics markMetrics = getConstraintMetrics( kieBase, "exprMetricsMark" );
+            assertEquals( 3, markMetrics.getEvaluations() );
+            assertEquals( 1, markMetrics.getPasses() );
+
+            ConstraintMetrics olderMetrics = getConstraintMetrics( kieBase, "exprMetricsOlder" );
+            assertEquals( 3, olderMetrics.getEvaluations() );
+            assertEquals( 1, olderMetrics.getPasses() );
+            assertEquals( 1.0 / 3, olderMetrics.getSelectivity(), 0.001 );
+
+            // another KieBase with the same expressions has metrics of its own
+            KieBase otherKieBase = KieBaseBuilder.createKieBaseFromModel( new ModelImpl().addRule( rule ) );
+            assertEquals( 0, getConstraintMetrics( otherKieBase, "exprMetricsMark" ).getEvaluations() );
+
+            KieBaseMetricsTracker.dispose( kieBase );
+            assertTrue( metricsRegistry.getConstraintMetrics( kieBase ).isEmpty() );
+            assertFalse( metricsRegistry.getConstraintMetrics().contains( markMetrics ) );
+        } finally {
+            metricsRegistry.setEnabled( false );
+        }
+    }
+
+    @Test
+    public void testUpdateKieBaseWithConstraintMetrics() {
+        Variable<Person> personV = declarationOf( type( Person.class ) );
+        Rule rule = rule( "metered" )
+                .view( expr( "exprMetered", personV, p -> p.getAge() > 30 ) )
+                .then( execute( () -> { } ) );
+
+        InternalKnowledgeBase kieBase = KieBaseBuilder.createKieBaseFromModel( new ModelImpl().addRule( rule ) );
+        org.kie.api.definition.rule.Rule plainRule = kieBase.getRule( rule.getPackage(), rule.getName() );
+
+        ConstraintMetricsRegistry metricsRegistry = ConstraintMetricsRegistry.get();
+        metricsRegistry.setEnabled( true );
+        try {
+            // a metered constraint is the same as the plain one with the same expression, so the rule is unchanged
+            new KieBaseBuilder().addModel( new ModelImpl().addRule( rule ) ).updateKieBase( kieBase );
+            assertSame( plainRule, kieBase.getRule( rule.getPackage(), rule.getName() ) );
+            // and the metrics registered while building the discarded new version are removed
+            assertTrue( metricsRegistry.getConstraintMetrics( kieBase ).isEmpty() );
+
+            Rule changedRule = rule( "changed" )
+                    .view( expr( "exprChanged1", personV, p -> p.getAge() > 40 ) )
+                    .then( execute( () -> { } ) );
+            InternalKnowledgeBase meteredKieBase = KieBaseBuilder.createKieBaseFromModel( new ModelImpl().addRule( rule ).addRule( changedRule ) );
+            ConstraintMetrics meteredMetrics = getConstraintMetrics( meteredKieBase, "exprMetered" );
+
+            Rule newChangedRule = rule( "changed" )
+                    .view( expr( "exprChanged2", personV, p -> p.getAge() > 50 ) )
+                    .then( execute( () -> { } ) );
+            new KieBaseBuilder().addModel( new ModelImpl().addRule( rule ).addRule( newChangedRule ) ).updateKieBase( meteredKieBase );
+
+            // only the metrics of the unchanged rule and of the new version of the changed one are left
+            assertEquals( 2, metricsRegistry.getConstraintMetrics( meteredKieBase ).size() );
+            assertSame( meteredMetrics, getConstraintMetrics( meteredKieBase, "exprMetered" ) );
+            assertNotNull( getConstraintMetrics( meteredKieBase, "exprChanged2" ) );
+        } finally {
+            metricsRegistry.setEnabled( false );
+        }
+    }
+
+    @Test
+    public void testRuleMetrics() {
+        RuleMetricsRegistry metricsRegistry = RuleMetricsRegistry.get();
+        metricsRegistry.setEnabled( true );
+        try {
+            metricsRegistry.reset();
+
+            Variable<Person> personV = declarationOf( type( Person.class ) );
+
+            Rule rule = rule( "ruleMetrics" )
+                    .view( expr( "exprA", personV, p -> p.getAge() > 30 ) )
+                    .then( on( personV ).execute( (drools, p) -> drools.insert( new Result( p.getName() ) ) ) );
+
+            KieBase kieBase = KieBaseBuilder.createKieBaseFromModel( new ModelImpl().addRule( rule ) );
+            KieSession ksession = kieBase.newKieSession();
+            ksession.insert( new Person( "Mark", 37 ) );
+            ksession.insert( new Person( "Edson", 25 ) );
+            ksession.insert( new Person( "Mario", 40 ) );
+            assertEquals( 2, ksession.fireAllRules() );
+
+            List<RuleMetrics> kieBaseMetrics = metricsRegistry.getRuleMetrics( kieBase );
+            assertEquals( 1, kieBaseMetrics.size() );
+            RuleMetrics metrics = kieBaseMetrics.get( 0 );
+            assertEquals( rule.getPackage() + "." + rule.getName(), metrics.getRuleName() );
+            assertEquals( 2, metrics.getFirings() );
+            assertEquals( 2, metrics.getInserts() );
+            assertEquals( 0, metrics.getUpdates() );
+            assertEquals( 0, metrics.getDeletes() );
+            assertTrue( metrics.getMaxConsequenceNanos() >= metrics.getMedianConsequenceNanos() );
+
+            KieBaseMetricsTracker.dispose( kieBase );
+            assertTrue( metricsRegistry.getRuleMetrics( kieBase ).isEmpty() );
+        } finally {
+            metricsRegistry.setEnabled( false );
+        }
+    }
+
+    @Test
+    public void testUpdateKieBaseWithRuleMetrics() {
+        RuleMetricsRegistry metricsRegistry = RuleMetricsRegistry.get();
+        metricsRegistry.setEnabled( true );
+        try {
+            Variable<Person> personV = declarationOf( type( Person.class ) );
+
+            Rule unchangedRule = rule( "unchanged" )
+                    .view( expr( "exprUnchanged", personV, p -> p.getAge() > 30 ) )
+                    .then( execute( () -> { } ) );
+            Rule changedRule = rule( "changed" )
+                    .view( expr( "exprChanged1", personV, p -> p.getAge() > 40 ) )
+                    .then( execute( () -> { } ) );
+            Rule removedRule = rule( "removed" )
+                    .view( expr( "exprRemoved", personV, p -> p.getAge() > 50 ) )
+                    .then( execute( () -> { } ) );
+
+            InternalKnowledgeBase kieBase = KieBaseBuilder.createKieBaseFromModel( new ModelImpl().addRule( unchangedRule ).addRule( changedRule ).addRule( removedRule ) );
+            assertEquals( 3, metricsRegistry.getRuleMetrics( kieBase ).size() );
+            RuleMetrics unchangedMetrics = getRuleMetrics( kieBase, unchangedRule );
+
+            Rule newChangedRule = rule( "changed" )
+                    .view( expr( "exprChanged2", personV, p -> p.getAge() > 45 ) )
+                    .then( execute( () -> { } ) );
+            new KieBaseBuilder().addModel( new ModelImpl().addRule( unchangedRule ).addRule( newChangedRule ) ).updateKieBase( kieBase );
+
+            // the metrics of the discarded new version of the unchanged rule and of the removed rule are gone,
+            // while the changed rule has only the ones of its new version
+            List<RuleMetrics> kieBaseMetrics = metricsRegistry.getRuleMetrics( kieBase );
+            assertEquals( 2, kieBaseMetrics.size() );
+            assertSame( unchangedMetrics, getRuleMetrics( kieBase, unchangedRule ) );
+            assertSame( ( (MeteredLambdaConsequence) ( (RuleImpl) kieBase.getRule( newChangedRule.getPackage(), newChangedRule.getName() ) ).getConsequence() ).getMetrics(),
+                        getRuleMetrics( kieBase, newChangedRule ) );
+        } finally {
+            metricsRegistry.setEnabled( false );
+        }
+    }
+
+    private static RuleMetrics getRuleMetrics( KieBase kieBase, Rule rule ) {
+        String ruleName = rule.getPackage() + "." + rule.getName();
+        return RuleMetricsRegistry.get().getRuleMetrics( kieBase ).stream()
+                                  .filter( metrics -> metrics.getRuleName().equals( ruleName ) )
+                                  .findFirst()
+                                  .orElseThrow( () -> new AssertionError( "No metrics for " + ruleName ) );
+    }
+
+    private static ConstraintMetrics getConstraintMetrics( KieBase kieBase, String constraintId ) {
+        return ConstraintMetricsRegistry.get().getConstraintMetrics( kieBase ).stream()
+                                        .filter( metrics -> metrics.getConstraintId().equals( constraintId ) )
+                                        .findFirst()
+                                        .orElseThrow( () -> new AssertionError( "No metrics for " + constraintId ) );
+    }
+
+    private static Model lazyModel( List<RuleSupplier> ruleSuppliers ) {
+        return new LazyModel() {
+            @Override
+            public List<RuleSupplier> getRuleSuppliers() {
+                return ruleSuppliers;
+            }
+
+            @Override
+            public List<Rule> getRules() {
+                return RuleSupplier.getRules( ruleSuppliers );
+            }
+
+            @Override
+            public List<Global> getGlobals() {
+                return Collections.emptyList();
+            }
+
+            @Override
+            public List<Query> getQueries() {
+                return Collections.emptyList();
+            }
+        };
+    }
 }
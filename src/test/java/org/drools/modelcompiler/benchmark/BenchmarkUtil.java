@@ -7,11 +7,18 @@ import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.UUID;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.drools.compiler.kie.builder.impl.InternalKieModule;
+import org.drools.compiler.kie.builder.impl.KieBuilderImpl;
+import org.drools.modelcompiler.CanonicalKieModule;
 import org.drools.modelcompiler.Person;
+import org.drools.modelcompiler.StockTick;
 import org.drools.modelcompiler.benchmark.BuildFromKJarBenchmark.BenchmarkType;
+import org.drools.modelcompiler.builder.CanonicalModelKieProject;
+import org.kie.api.KieBase;
 import org.kie.api.KieServices;
 import org.kie.api.builder.KieBuilder;
 import org.kie.api.builder.KieFileSystem;
@@ -19,12 +26,41 @@ import org.kie.api.builder.Message;
 import org.kie.api.builder.ReleaseId;
 import org.kie.api.builder.model.KieBaseModel;
 import org.kie.api.builder.model.KieModuleModel;
+import org.kie.api.conf.EventProcessingOption;
+import org.kie.api.conf.KieBaseOption;
 import org.kie.api.io.Resource;
+import org.kie.api.io.ResourceType;
+import org.kie.internal.utils.KieHelper;
 
 public final class BenchmarkUtil {
 
+    /**
+     * The shapes of the generated rules. BETA is the original template, joining 2 patterns with ==, != and >,
+     * and is the only one available also as handwritten executable model. QUERY is generated only as DRL,
+     * since the executable model generation doesn't support queries yet.
+     */
+    public enum RuleShape {
+        BETA, ALPHA, JOIN, ACCUMULATE, NOT_EXISTS, OR, QUERY, CEP, MODIFY;
+
+        public static RuleShape[] parse( String shapes ) {
+            return Stream.of( shapes.split( "," ) ).map( String::trim ).map( RuleShape::valueOf ).toArray( RuleShape[]::new );
+        }
+    }
+
     public static KJarWithKnowledgeFiles createJarFile(KieServices kieServices, ReleaseId releaseId, int numberOfRules,
             int numberOfRulesPerFile, BenchmarkType type ) {
+        return createJarFile( kieServices, releaseId, numberOfRules, numberOfRulesPerFile, type, RuleShape.BETA );
+    }
+
+    /**
+     * Creates a kjar whose rules have the given shapes, used in turn by the generated rules, so that each
+     * shape is equally represented.
+     */
+    public static KJarWithKnowledgeFiles createJarFile(KieServices kieServices, ReleaseId releaseId, int numberOfRules,
+            int numberOfRulesPerFile, BenchmarkType type, RuleShape... shapes ) {
+        if (type.useRuleModel && ( shapes.length != 1 || shapes[0] != RuleShape.BETA )) {
+            throw new IllegalArgumentException( "The rule model sources are available only for the " + RuleShape.BETA + " shape" );
+        }
 
         final KieFileSystem kieFileSystem = kieServices.newKieFileSystem();
         kieFileSystem.writeKModuleXML(getDefaultKieModuleModel(kieServices).toXML());
@@ -34,7 +70,7 @@ public final class BenchmarkUtil {
 
         Collection<String> generatedKnowledge = type.useRuleModel ?
                                                 generateRuleModelSourcesToKJar(kieFileSystem, numberOfRules, numberOfRulesPerFile, type.generateExprId) :
-                                                generateDRLsToKJar(kieFileSystem, numberOfRules, numberOfRulesPerFile);
+                                                generateDRLsToKJar(kieFileSystem, numberOfRules, numberOfRulesPerFile, shapes);
 
         final KieBuilder kieBuilder = kieServices.newKieBuilder( kieFileSystem );
         testGeneratedKnowledge(kieBuilder);
@@ -42,47 +78,134 @@ public final class BenchmarkUtil {
         return new KJarWithKnowledgeFiles(jarFile, generatedKnowledge);
     }
 
+    /**
+     * Creates a kjar containing the executable model generated from the DRLs with the given shapes.
+     */
+    public static File createCanonicalJarFile(KieServices kieServices, ReleaseId releaseId, int numberOfRules,
+            int numberOfRulesPerFile, RuleShape... shapes) {
+        final KieFileSystem kieFileSystem = kieServices.newKieFileSystem();
+        kieFileSystem.writeKModuleXML(getDefaultKieModuleModel(kieServices).toXML());
+        kieFileSystem.writePomXML(getPom(releaseId));
+
+        writeDomainModelToKJar(kieServices, kieFileSystem);
+        generateDRLsToKJar(kieFileSystem, numberOfRules, numberOfRulesPerFile, shapes);
+
+        final KieBuilder kieBuilder = ( (KieBuilderImpl) kieServices.newKieBuilder( kieFileSystem ) ).buildAll( CanonicalModelKieProject::new );
+        checkMessages(kieBuilder.getResults().getMessages());
+        return writeKJarToFile(kieBuilder, releaseId);
+    }
+
     private static void writeDomainModelToKJar(final KieServices kieServices, final KieFileSystem kieFileSystem) {
-        final String javaSrc = Person.class.getCanonicalName().replace( '.', File.separatorChar ) + ".java";
-        final Resource javaResource = kieServices.getResources().newFileSystemResource("src/test/java/" + javaSrc);
-        kieFileSystem.write("src/main/java/" + javaSrc, javaResource);
+        for (Class<?> domainClass : new Class<?>[] { Person.class, StockTick.class }) {
+            final String javaSrc = domainClass.getCanonicalName().replace( '.', File.separatorChar ) + ".java";
+            final Resource javaResource = kieServices.getResources().newFileSystemResource("src/test/java/" + javaSrc);
+            kieFileSystem.write("src/main/java/" + javaSrc, javaResource);
+        }
     }
 
     private static Collection<String> generateDRLsToKJar(final KieFileSystem kieFileSystem, final int numberOfRules,
-            final int numberOfRulesPerFile) {
+            final int numberOfRulesPerFile, final RuleShape... shapes) {
         final Collection<String> generatedDrls = new ArrayList<>();
         // Rounding down so we generate all files with the exact amount of rules first.
         final BigDecimal numberOfFiles = BigDecimal.valueOf(numberOfRules)
                 .divide(BigDecimal.valueOf(numberOfRulesPerFile), 0, BigDecimal.ROUND_DOWN);
         for (int i = 1; i <= numberOfFiles.intValue(); i++) {
-            generatedDrls.add(generateDRLtoKJar(kieFileSystem, numberOfRulesPerFile, i));
+            generatedDrls.add(generateDRLtoKJar(kieFileSystem, numberOfRulesPerFile, i, shapes));
         }
         // Remaining rules are generated into one last file.
         final int numberOfRulesLeftToGenerate = numberOfRules - (numberOfFiles.intValue() * numberOfRulesPerFile);
         if (numberOfRulesLeftToGenerate > 0) {
-            generatedDrls.add(generateDRLtoKJar(kieFileSystem, numberOfRulesLeftToGenerate, numberOfFiles.intValue() + 1));
+            generatedDrls.add(generateDRLtoKJar(kieFileSystem, numberOfRulesLeftToGenerate, numberOfFiles.intValue() + 1, shapes));
         }
         return generatedDrls;
     }
 
-    private static String generateDRLtoKJar(final KieFileSystem kieFileSystem, final int numberOfRules, final int fileIndex) {
+    private static String generateDRLtoKJar(final KieFileSystem kieFileSystem, final int numberOfRules, final int fileIndex,
+            final RuleShape... shapes) {
+        final String drlName = "src/main/resources/rules" + fileIndex + ".drl";
+        kieFileSystem.write(drlName, generateDRL(numberOfRules, fileIndex, shapes));
+        return drlName;
+    }
+
+    public static String generateDRL(final int numberOfRules, final int fileIndex, final RuleShape... shapes) {
         final StringBuilder rulesBuilder = new StringBuilder();
         rulesBuilder.append("package org.drools.modelcompiler.benchmarks;\n");
         rulesBuilder.append("\n");
         rulesBuilder.append("import " + Person.class.getCanonicalName() + ";\n");
+        rulesBuilder.append("import " + StockTick.class.getCanonicalName() + ";\n");
         rulesBuilder.append("\n");
         for (int i = 1; i <= numberOfRules; i++) {
-            rulesBuilder.append("rule R_" + fileIndex + "_" + i + " when\n");
-            rulesBuilder.append("  $p1 : Person(name == \"Mark_" + fileIndex + "_" + i + "\")\n");
-            rulesBuilder.append("  $p2 : Person(name != \"Mark_" + fileIndex + "_" + i + "\", age > $p1.age)\n");
-            rulesBuilder.append("then\n");
-            rulesBuilder.append("  System.out.println($p2.getName() + \" is older than \" + $p1.getName());\n");
-            rulesBuilder.append("end\n");
+            generateRule(rulesBuilder, shapes[(i - 1) % shapes.length], "_" + fileIndex + "_" + i, i);
             rulesBuilder.append("\n");
         }
-        final String drlName = "src/main/resources/rules" + fileIndex + ".drl";
-        kieFileSystem.write(drlName, rulesBuilder.toString());
-        return drlName;
+        return rulesBuilder.toString();
+    }
+
+    private static void generateRule(final StringBuilder rulesBuilder, final RuleShape shape, final String ruleId, final int ruleIndex) {
+        if (shape == RuleShape.QUERY) {
+            rulesBuilder.append("query Q" + ruleId + "( int $age )\n");
+            rulesBuilder.append("  $p : Person(name == \"Mark" + ruleId + "\", age > $age)\n");
+            rulesBuilder.append("end\n");
+            return;
+        }
+
+        rulesBuilder.append("rule R" + ruleId + " when\n");
+        switch (shape) {
+            case BETA:
+                rulesBuilder.append("  $p1 : Person(name == \"Mark" + ruleId + "\")\n");
+                rulesBuilder.append("  $p2 : Person(name != \"Mark" + ruleId + "\", age > $p1.age)\n");
+                rulesBuilder.append("then\n");
+                rulesBuilder.append("  System.out.println($p2.getName() + \" is older than \" + $p1.getName());\n");
+                break;
+            case ALPHA:
+                rulesBuilder.append("  $p : Person(name == \"Mark" + ruleId + "\", age > " + ( ruleIndex % 100 ) + ")\n");
+                rulesBuilder.append("then\n");
+                rulesBuilder.append("  System.out.println($p.getName());\n");
+                break;
+            case JOIN:
+                // from 3 to 5 patterns, each one joined with the previous
+                int numberOfPatterns = 3 + ruleIndex % 3;
+                rulesBuilder.append("  $p0 : Person(name == \"Mark" + ruleId + "\")\n");
+                for (int i = 1; i < numberOfPatterns; i++) {
+                    rulesBuilder.append("  $p" + i + " : Person(age > $p" + ( i - 1 ) + ".age)\n");
+                }
+                rulesBuilder.append("then\n");
+                rulesBuilder.append("  System.out.println($p" + ( numberOfPatterns - 1 ) + ".getName());\n");
+                break;
+            case ACCUMULATE:
+                rulesBuilder.append("  accumulate ( $p : Person ( getName().startsWith(\"Mark" + ruleId + "\") );\n");
+                rulesBuilder.append("               $sum : sum($p.getAge()) )\n");
+                rulesBuilder.append("then\n");
+                rulesBuilder.append("  System.out.println($sum);\n");
+                break;
+            case NOT_EXISTS:
+                rulesBuilder.append("  $p : Person(name == \"Mark" + ruleId + "\")\n");
+                rulesBuilder.append("  not( Person(age > $p.age) )\n");
+                rulesBuilder.append("  exists( Person(age < $p.age) )\n");
+                rulesBuilder.append("then\n");
+                rulesBuilder.append("  System.out.println($p.getName());\n");
+                break;
+            case OR:
+                rulesBuilder.append("  $p : Person(name == \"Mark" + ruleId + "\") or\n");
+                rulesBuilder.append("  ( $mark : Person(name == \"Mark\")\n");
+                rulesBuilder.append("    and\n");
+                rulesBuilder.append("    $p : Person(age > $mark.age) )\n");
+                rulesBuilder.append("then\n");
+                rulesBuilder.append("  System.out.println($p.getName());\n");
+                break;
+            case CEP:
+                rulesBuilder.append("  $a : StockTick(company == \"DROO" + ruleId + "\")\n");
+                rulesBuilder.append("  $b : StockTick(company == \"ACME\", this after[5s,8s] $a)\n");
+                rulesBuilder.append("then\n");
+                rulesBuilder.append("  System.out.println($a.getCompany());\n");
+                break;
+            case MODIFY:
+                rulesBuilder.append("  $p : Person(name == \"Mark" + ruleId + "\", age < 100)\n");
+                rulesBuilder.append("then\n");
+                rulesBuilder.append("  modify($p) { setAge($p.getAge()+1) }\n");
+                break;
+        }
+        rulesBuilder.append("end\n");
     }
 
     private static Collection<String> generateRuleModelSourcesToKJar(KieFileSystem kieFileSystem, int numberOfRules, int numberOfRulesPerFile, boolean generateExprId) {
@@ -175,6 +298,35 @@ public final class BenchmarkUtil {
         return sb.toString();
     }
 
+    public static KieBase createKieBaseFromDrl(final String drl, final KieBaseOption... options) {
+        final KieHelper kieHelper = new KieHelper();
+        kieHelper.addContent(drl, ResourceType.DRL);
+        return kieHelper.build(options);
+    }
+
+    /**
+     * Creates a KieBase from the executable model generated from the given DRL, going through a kjar
+     * as it happens when the model compiler is used in a real project.
+     */
+    public static KieBase createCanonicalKieBaseFromDrl(final String drl, final EventProcessingOption eventProcessingOption) {
+        final KieServices kieServices = KieServices.get();
+        final ReleaseId releaseId = kieServices.newReleaseId("org.kie", "canonical-kjar-" + UUID.randomUUID(), "1.0");
+        final KieModuleModel kieModuleModel = getDefaultKieModuleModel(kieServices);
+        kieModuleModel.getKieBaseModels().get("kbase").setEventProcessingMode(eventProcessingOption);
+
+        final KieFileSystem kieFileSystem = kieServices.newKieFileSystem();
+        kieFileSystem.writeKModuleXML(kieModuleModel.toXML());
+        kieFileSystem.writePomXML(getPom(releaseId));
+        kieFileSystem.write("src/main/resources/rules.drl", drl);
+
+        final KieBuilder kieBuilder = ( (KieBuilderImpl) kieServices.newKieBuilder( kieFileSystem ) ).buildAll( CanonicalModelKieProject::new );
+        checkMessages(kieBuilder.getResults().getMessages());
+        final File jarFile = writeKJarToFile(kieBuilder, releaseId);
+
+        kieServices.getRepository().addKieModule(new CanonicalKieModule(releaseId, kieModuleModel, jarFile));
+        return kieServices.newKieContainer(releaseId).getKieBase();
+    }
+
     public static KieModuleModel getDefaultKieModuleModel(final KieServices ks) {
         final KieModuleModel kieModuleModel = ks.newKieModuleModel();
         final KieBaseModel kieBaseModel1 = kieModuleModel.newKieBaseModel( "kbase" ).setDefault( true );
@@ -197,7 +349,10 @@ public final class BenchmarkUtil {
     }
 
     private static void testGeneratedKnowledge(final KieBuilder kieBuilder) {
-        List<Message> messages = kieBuilder.buildAll().getResults().getMessages();
+        checkMessages(kieBuilder.buildAll().getResults().getMessages());
+    }
+
+    private static void checkMessages(final List<Message> messages) {
         if (!messages.isEmpty()) {
             final String s = messages.stream().map(Message::getText).collect(Collectors.joining("\n"));
             throw new IllegalStateException("There are build errors in generated knowledge!\n" + s);
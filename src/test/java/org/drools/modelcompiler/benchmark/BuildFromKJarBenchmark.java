@@ -52,8 +52,7 @@ public class BuildFromKJarBenchmark {
     @Param("50")
     private int numberOfRulesPerFile;
 
-//    @Param({"DRL", "MODEL", "MODEL_WITH_EXPR_ID"})
-    @Param({"DRL"})
+    @Param({"DRL", "MODEL", "MODEL_WITH_EXPR_ID"})
     private BenchmarkType type;
 
     public BuildFromKJarBenchmark() { }
@@ -0,0 +1,200 @@
+package org.drools.modelcompiler.benchmark;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.drools.compiler.builder.impl.KnowledgeBuilderImpl;
+import org.drools.compiler.commons.jci.compilers.CompilationResult;
+import org.drools.compiler.commons.jci.compilers.EclipseJavaCompiler;
+import org.drools.compiler.commons.jci.compilers.JavaCompilerFactory;
+import org.drools.compiler.compiler.DrlParser;
+import org.drools.compiler.compiler.DroolsParserException;
+import org.drools.compiler.compiler.io.memory.MemoryFileSystem;
+import org.drools.compiler.lang.descr.PackageDescr;
+import org.drools.compiler.rule.builder.dialect.java.JavaDialectConfiguration;
+import org.drools.core.definitions.InternalKnowledgePackage;
+import org.drools.core.impl.InternalKnowledgeBase;
+import org.drools.core.impl.KnowledgeBaseFactory;
+import org.drools.model.Model;
+import org.drools.modelcompiler.KiePackagesBuilder;
+import org.drools.modelcompiler.benchmark.BenchmarkUtil.RuleShape;
+import org.drools.modelcompiler.builder.PackageModel;
+import org.drools.modelcompiler.builder.RuleDescrImpl;
+import org.drools.modelcompiler.builder.generator.ModelGenerator;
+import org.kie.api.KieBaseConfiguration;
+import org.kie.api.KieServices;
+import org.kie.api.definition.KiePackage;
+import org.kie.internal.builder.conf.LanguageLevelOption;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static org.drools.modelcompiler.CanonicalKieModule.RULES_FILE_NAME;
+
+/**
+ * Times separately each phase of the pipeline turning a DRL into a KieBase through the executable model, so that
+ * a build time regression can be attributed to a specific phase. The setup runs the whole pipeline once and each
+ * benchmark repeats a single phase starting from the output of the previous one.
+ * The rules are generated with the shapes listed in the shapes parameter, used in turn by the generated rules.
+ */
+@Fork(1)
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 5, time = 5, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 5, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BuildPhasesBenchmark {
+
+    @Param({"100", "1000"})
+    private int numberOfRules;
+
+    @Param({"BETA", "ALPHA,JOIN,ACCUMULATE,NOT_EXISTS,OR,CEP,MODIFY"})
+    private String shapes;
+
+    private String drl;
+    private PackageDescr packageDescr;
+    private InternalKnowledgePackage pkg;
+    private List<RuleDescrImpl> ruleDescrs;
+    private PackageModel packageModel;
+    private String rulesSourceName;
+    private String rulesSource;
+    private MemoryFileSystem compiledClasses;
+    private Model model;
+    private KieBaseConfiguration kieBaseConf;
+
+    @Setup(Level.Trial)
+    public void setUpPipeline() throws Exception {
+        drl = BenchmarkUtil.generateDRL( numberOfRules, 1, RuleShape.parse( shapes ) );
+        packageDescr = parseDrl();
+
+        KnowledgeBuilderImpl kbuilder = new KnowledgeBuilderImpl();
+        kbuilder.addPackage( packageDescr );
+        if (kbuilder.hasErrors()) {
+            throw new IllegalStateException( "There are build errors in generated knowledge!\n" + kbuilder.getErrors() );
+        }
+        pkg = kbuilder.getPackageRegistry( packageDescr.getName() ).getPackage();
+        ruleDescrs = packageDescr.getRules().stream()
+                                 .map( descr -> new RuleDescrImpl( descr, pkg.getRule( descr.getName() ) ) )
+                                 .collect( Collectors.toList() );
+
+        packageModel = generateModel();
+        rulesSourceName = "src/main/java/" + packageModel.getName().replace( '.', '/' ) + "/" + RULES_FILE_NAME + ".java";
+        rulesSource = prettyPrint();
+        compiledClasses = compileJava();
+        model = loadModel();
+        kieBaseConf = KieServices.get().newKieBaseConfiguration();
+    }
+
+    @Benchmark
+    public PackageDescr parseDrl() throws DroolsParserException {
+        DrlParser parser = new DrlParser( LanguageLevelOption.DRL6 );
+        PackageDescr descr = parser.parse( null, drl );
+        if (parser.hasErrors()) {
+            throw new IllegalStateException( "There are parse errors in generated knowledge!\n" + parser.getErrors() );
+        }
+        return descr;
+    }
+
+    @Benchmark
+    public PackageModel generateModel() {
+        return ModelGenerator.generateModel( pkg, ruleDescrs );
+    }
+
+    @Benchmark
+    public String prettyPrint() {
+        return packageModel.getRulesSource();
+    }
+
+    @Benchmark
+    public MemoryFileSystem compileJava() {
+        MemoryFileSystem srcMfs = new MemoryFileSystem();
+        MemoryFileSystem trgMfs = new MemoryFileSystem();
+        srcMfs.write( rulesSourceName, rulesSource.getBytes() );
+
+        EclipseJavaCompiler javaCompiler = (EclipseJavaCompiler) JavaCompilerFactory.getInstance().loadCompiler( JavaDialectConfiguration.CompilerType.ECLIPSE, "1.8" );
+        javaCompiler.setPrefix( "src/main/java/" );
+        CompilationResult res = javaCompiler.compile( new String[] { rulesSourceName }, srcMfs, trgMfs, getClass().getClassLoader() );
+        if (res.getErrors().length != 0) {
+            throw new IllegalStateException( "Compilation errors: " + Arrays.toString( res.getErrors() ) );
+        }
+        return trgMfs;
+    }
+
+    /**
+     * Loads the compiled Rules class in a new class loader and instantiates it. Since the rules are built
+     * lazily, it also runs their DSL, so this phase covers both the class loading and the model instantiation.
+     */
+    @Benchmark
+    public Model loadModel() throws Exception {
+        ClassLoader classLoader = new MemoryClassLoader( compiledClasses, getClass().getClassLoader() );
+        Model loadedModel = (Model) classLoader.loadClass( packageModel.getName() + "." + RULES_FILE_NAME ).newInstance();
+        loadedModel.getRules();
+        return loadedModel;
+    }
+
+    @Benchmark
+    public Collection<KiePackage> buildPackages() {
+        return newPackagesBuilder().getKnowledgePackages();
+    }
+
+    @Benchmark
+    public InternalKnowledgeBase buildRete( BuiltPackages builtPackages ) {
+        InternalKnowledgeBase kBase = KnowledgeBaseFactory.newKnowledgeBase( "defaultkiebase", kieBaseConf );
+        builtPackages.builder.getPatternClasses().forEach( kBase::getOrCreateExactTypeDeclaration );
+        kBase.addPackages( builtPackages.pkgs );
+        return kBase;
+    }
+
+    /**
+     * The packages to be added to the KieBase, built again for each invocation since the KieBase takes ownership of them.
+     */
+    @State(Scope.Thread)
+    public static class BuiltPackages {
+
+        private KiePackagesBuilder builder;
+        private Collection<KiePackage> pkgs;
+
+        @Setup(Level.Invocation)
+        public void setUpPackages( BuildPhasesBenchmark benchmark ) {
+            builder = benchmark.newPackagesBuilder();
+            pkgs = builder.getKnowledgePackages();
+        }
+    }
+
+    private KiePackagesBuilder newPackagesBuilder() {
+        KiePackagesBuilder builder = new KiePackagesBuilder( kieBaseConf );
+        builder.addModel( model );
+        return builder;
+    }
+
+    private static class MemoryClassLoader extends ClassLoader {
+
+        private final MemoryFileSystem mfs;
+
+        private MemoryClassLoader( MemoryFileSystem mfs, ClassLoader parent ) {
+            super( parent );
+            this.mfs = mfs;
+        }
+
+        @Override
+        protected Class<?> findClass( String name ) throws ClassNotFoundException {
+            byte[] bytes = mfs.getBytes( name.replace( '.', '/' ) + ".class" );
+            if (bytes == null) {
+                throw new ClassNotFoundException( name );
+            }
+            return defineClass( name, bytes, 0, bytes.length );
+        }
+    }
+}
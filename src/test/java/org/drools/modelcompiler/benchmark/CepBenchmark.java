@@ -0,0 +1,262 @@
+package org.drools.modelcompiler.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.drools.core.ClockType;
+import org.drools.core.impl.KnowledgeBaseFactory;
+import org.drools.model.Index.ConstraintType;
+import org.drools.model.Variable;
+import org.drools.model.Window;
+import org.drools.model.WindowReference;
+import org.drools.model.impl.ModelImpl;
+import org.drools.modelcompiler.StockTick;
+import org.drools.modelcompiler.benchmark.BuildFromKJarBenchmark.BenchmarkType;
+import org.drools.modelcompiler.builder.KieBaseBuilder;
+import org.kie.api.KieBase;
+import org.kie.api.conf.EventProcessingOption;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.KieSessionConfiguration;
+import org.kie.api.runtime.conf.ClockTypeOption;
+import org.kie.api.runtime.rule.EntryPoint;
+import org.kie.api.time.SessionPseudoClock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static org.drools.model.DSL.*;
+
+/**
+ * Replays a stream of StockTicks, timestamped by the pseudo clock advancing of eventIntervalMillis after each
+ * of them, through the rules of the CepTest built from DRL and from the executable model.
+ * The processEvent benchmark inserts a single event and fires the rules, so its throughput is the events per
+ * second rate and its sample time the end-to-end latency per event. The same session is used for the whole
+ * iteration, so it works on a steady state window: at the end of each iteration the number of live events and
+ * the heap they retain are printed. The expireEvents benchmark measures the time needed to expire a full window.
+ */
+@Fork(1)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 5, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 5, timeUnit = TimeUnit.SECONDS)
+public class CepBenchmark {
+
+    public enum Scenario {
+        AFTER, ENTRY_POINTS, SLIDING_WINDOW, DECLARED_WINDOW
+    }
+
+    // longer than both the 8 seconds of the after constraint and the 5 seconds of the windows
+    private static final long EXPIRATION_HORIZON_MILLIS = 10_000L;
+
+    private static final String[] COMPANIES = { "DROO", "ACME", "RHT", "ACME" };
+
+    @Param({"DRL", "MODEL"})
+    private BenchmarkType type;
+
+    @Param({"AFTER", "ENTRY_POINTS", "SLIDING_WINDOW", "DECLARED_WINDOW"})
+    private Scenario scenario;
+
+    @Param({"1", "10"})
+    private long eventIntervalMillis;
+
+    private KieBase kieBase;
+
+    private KieSession kieSession;
+    private SessionPseudoClock clock;
+    private EntryPoint[] entryPoints;
+    private long eventCounter;
+    private long usedMemoryBeforeIteration;
+
+    @Setup(Level.Trial)
+    public void setUpKieBase() {
+        kieBase = type.useRuleModel ?
+                  KieBaseBuilder.createKieBaseFromModel( getModel( scenario ), EventProcessingOption.STREAM ) :
+                  BenchmarkUtil.createKieBaseFromDrl( getDrl( scenario ), EventProcessingOption.STREAM );
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpSession() {
+        usedMemoryBeforeIteration = usedMemoryAfterGc();
+        kieSession = newPseudoClockSession( kieBase );
+        clock = kieSession.getSessionClock();
+        entryPoints = getEntryPoints( kieSession, scenario );
+        eventCounter = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void disposeSession() {
+        long liveEvents = getLiveEvents( kieSession );
+        long windowMemory = usedMemoryAfterGc() - usedMemoryBeforeIteration;
+        System.out.println( "\nEvents: " + eventCounter + ", live events: " + liveEvents +
+                            ", window memory: " + ( windowMemory / 1024 ) + " KB" +
+                            ( liveEvents > 0 ? " (" + ( windowMemory / liveEvents ) + " bytes per live event)" : "" ) );
+        kieSession.dispose();
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public int processEvent() {
+        insertEvent( entryPoints, eventCounter++ );
+        clock.advanceTime( eventIntervalMillis, TimeUnit.MILLISECONDS );
+        return kieSession.fireAllRules();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public long expireEvents( FullWindow fullWindow ) {
+        fullWindow.clock.advanceTime( EXPIRATION_HORIZON_MILLIS, TimeUnit.MILLISECONDS );
+        fullWindow.kieSession.fireAllRules();
+        return getLiveEvents( fullWindow.kieSession );
+    }
+
+    /**
+     * A session containing all the events that fit in the expiration horizon, created again for each invocation
+     * of the expireEvents benchmark.
+     */
+    @State(Scope.Thread)
+    public static class FullWindow {
+
+        private KieSession kieSession;
+        private SessionPseudoClock clock;
+
+        @Setup(Level.Invocation)
+        public void setUpSession( CepBenchmark benchmark ) {
+            kieSession = newPseudoClockSession( benchmark.kieBase );
+            clock = kieSession.getSessionClock();
+            EntryPoint[] entryPoints = getEntryPoints( kieSession, benchmark.scenario );
+            long numberOfEvents = EXPIRATION_HORIZON_MILLIS / benchmark.eventIntervalMillis;
+            for (long i = 0; i < numberOfEvents; i++) {
+                insertEvent( entryPoints, i );
+                clock.advanceTime( benchmark.eventIntervalMillis, TimeUnit.MILLISECONDS );
+            }
+            kieSession.fireAllRules();
+        }
+
+        @TearDown(Level.Invocation)
+        public void disposeSession() {
+            kieSession.dispose();
+        }
+    }
+
+    private static void insertEvent( EntryPoint[] entryPoints, long eventCounter ) {
+        String company = COMPANIES[(int) ( eventCounter % COMPANIES.length )];
+        // when there are 2 entry points the DROO ticks go in the first one and all the others in the second
+        EntryPoint entryPoint = entryPoints.length > 1 && !company.equals( "DROO" ) ? entryPoints[1] : entryPoints[0];
+        entryPoint.insert( new StockTick( company ) );
+    }
+
+    static KieSession newPseudoClockSession( KieBase kieBase ) {
+        KieSessionConfiguration sessionConfig = KnowledgeBaseFactory.newKnowledgeSessionConfiguration();
+        sessionConfig.setOption( ClockTypeOption.get( ClockType.PSEUDO_CLOCK.getId() ) );
+        return kieBase.newKieSession( sessionConfig, null );
+    }
+
+    private static EntryPoint[] getEntryPoints( KieSession kieSession, Scenario scenario ) {
+        return scenario == Scenario.ENTRY_POINTS ?
+               new EntryPoint[] { kieSession.getEntryPoint( "ep1" ), kieSession.getEntryPoint( "ep2" ) } :
+               new EntryPoint[] { kieSession };
+    }
+
+    static long getLiveEvents( KieSession kieSession ) {
+        long liveEvents = 0;
+        for (EntryPoint entryPoint : kieSession.getEntryPoints()) {
+            liveEvents += entryPoint.getFactCount();
+        }
+        return liveEvents;
+    }
+
+    static long usedMemoryAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    static String getDrl( Scenario scenario ) {
+        StringBuilder sb = new StringBuilder();
+        sb.append( "package org.drools.modelcompiler.benchmarks;\n" );
+        sb.append( "import " + StockTick.class.getCanonicalName() + ";\n" );
+        switch (scenario) {
+            case AFTER:
+                sb.append( "rule R when\n" +
+                           "  $a : StockTick( company == \"DROO\" )\n" +
+                           "  $b : StockTick( company == \"ACME\", this after[5s,8s] $a )\n" +
+                           "then end\n" );
+                break;
+            case ENTRY_POINTS:
+                sb.append( "rule R when\n" +
+                           "  $a : StockTick( company == \"DROO\" ) from entry-point ep1\n" +
+                           "  $b : StockTick( company == \"ACME\", this after[5s,8s] $a ) from entry-point ep2\n" +
+                           "then end\n" );
+                break;
+            case SLIDING_WINDOW:
+                sb.append( "rule R when\n" +
+                           "  $a : StockTick( company == \"DROO\" ) over window:time( 5s )\n" +
+                           "then end\n" );
+                break;
+            case DECLARED_WINDOW:
+                sb.append( "declare window DeclaredWindow\n" +
+                           "  StockTick( company == \"DROO\" ) over window:time( 5s )\n" +
+                           "end\n" +
+                           "rule R when\n" +
+                           "  $a : StockTick() from window DeclaredWindow\n" +
+                           "then end\n" );
+                break;
+        }
+        return sb.toString();
+    }
+
+    static ModelImpl getModel( Scenario scenario ) {
+        ModelImpl model = new ModelImpl();
+        switch (scenario) {
+            case AFTER:
+            case ENTRY_POINTS: {
+                Variable<StockTick> drooV = scenario == Scenario.ENTRY_POINTS ?
+                                            declarationOf( type( StockTick.class ), entryPoint( "ep1" ) ) :
+                                            declarationOf( type( StockTick.class ) );
+                Variable<StockTick> acmeV = scenario == Scenario.ENTRY_POINTS ?
+                                            declarationOf( type( StockTick.class ), entryPoint( "ep2" ) ) :
+                                            declarationOf( type( StockTick.class ) );
+                model.addRule( rule( "R" )
+                                       .view( expr( "exprA", drooV, s -> s.getCompany().equals( "DROO" ) )
+                                                      .indexedBy( String.class, ConstraintType.EQUAL, StockTick::getCompany, "DROO" )
+                                                      .reactOn( "company" ),
+                                              expr( "exprB", acmeV, s -> s.getCompany().equals( "ACME" ) )
+                                                      .indexedBy( String.class, ConstraintType.EQUAL, StockTick::getCompany, "ACME" )
+                                                      .reactOn( "company" ),
+                                              expr( "exprC", acmeV, drooV, after( 5, TimeUnit.SECONDS, 8, TimeUnit.SECONDS ) ) )
+                                       .then( execute( () -> { } ) ) );
+                break;
+            }
+            case SLIDING_WINDOW: {
+                Variable<StockTick> drooV = declarationOf( type( StockTick.class ), window( Window.Type.TIME, 5, TimeUnit.SECONDS ) );
+                model.addRule( rule( "R" )
+                                       .view( expr( "exprA", drooV, s -> s.getCompany().equals( "DROO" ) )
+                                                      .indexedBy( String.class, ConstraintType.EQUAL, StockTick::getCompany, "DROO" )
+                                                      .reactOn( "company" ) )
+                                       .then( on( drooV ).execute( s -> { } ) ) );
+                break;
+            }
+            case DECLARED_WINDOW: {
+                WindowReference window = window( Window.Type.TIME, 5, TimeUnit.SECONDS, StockTick.class, s -> s.getCompany().equals( "DROO" ) );
+                Variable<StockTick> drooV = declarationOf( type( StockTick.class ), window );
+                model.addRule( rule( "R" )
+                                       .view( input( drooV ) )
+                                       .then( on( drooV ).execute( s -> { } ) ) );
+                break;
+            }
+        }
+        return model;
+    }
+}
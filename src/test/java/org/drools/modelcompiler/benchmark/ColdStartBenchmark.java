@@ -0,0 +1,183 @@
+package org.drools.modelcompiler.benchmark;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.drools.model.Model;
+import org.drools.modelcompiler.CanonicalKieModule;
+import org.drools.modelcompiler.CanonicalModelRegistry;
+import org.drools.modelcompiler.Person;
+import org.drools.modelcompiler.builder.KieBaseBuilder;
+import org.kie.api.KieBase;
+import org.kie.api.KieServices;
+import org.kie.api.builder.ReleaseId;
+import org.kie.api.runtime.KieSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import static org.drools.modelcompiler.CanonicalKieModule.MODEL_REGISTRY_FILE_NAME;
+import static org.drools.modelcompiler.CanonicalKieModule.MODEL_REGISTRY_PACKAGE;
+
+/**
+ * Measures the time to the first fired rule of a canonical kjar in a fresh JVM: each fork runs a single shot
+ * of the benchmark, so none of the classes of the kjar has been loaded or jitted before it.
+ * The fromKieContainer benchmark goes through the CanonicalKieModule and a KieContainer as an application does,
+ * while the other ones stop after each phase of the startup, so the time of a phase is the difference with the
+ * previous one: loadClasses defines all the classes of the kjar, instantiateModels creates the models and runs
+ * their DSL, buildKieBase creates the Rete network and fireFirstRule creates a session and fires a rule.
+ * Since they use a plain class loader on the kjar, they approximate what the CanonicalKieModule does.
+ * The kjars are built by the main method before starting the benchmark, for all the values of the parameters, so the
+ * measured forks don't do any build work: they find the kjars in the directory passed by the system property
+ * {@value #KJARS_DIR_PROPERTY}. So the benchmark has to be run through its main method, that deletes the kjars at the end.
+ * Since the forks build nothing, the measured time also includes loading the engine classes not already loaded by the
+ * setup, as in the startup of an application.
+ */
+@Fork(10)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ColdStartBenchmark {
+
+    static final String KJARS_DIR_PROPERTY = "drools.modelcompiler.coldStart.kjarsDir";
+
+    @Param({"100", "1000", "10000"})
+    private int numberOfRules;
+
+    @Param("50")
+    private int numberOfRulesPerFile;
+
+    private ReleaseId releaseId;
+    private File kjarFile;
+
+    @Setup(Level.Trial)
+    public void setUpKJar() {
+        String kjarsDir = System.getProperty( KJARS_DIR_PROPERTY );
+        String kjarName = getKJarName( numberOfRules, numberOfRulesPerFile );
+        kjarFile = new File( kjarsDir != null ? kjarsDir : "", kjarName + ".jar" );
+        if (kjarsDir == null || !kjarFile.exists()) {
+            throw new IllegalStateException( "Missing kjar " + kjarFile + ": run the benchmark through the main method of " +
+                                             ColdStartBenchmark.class.getSimpleName() + ", that builds the kjars before forking" );
+        }
+        releaseId = KieServices.get().newReleaseId( "org.kie", kjarName, "1.0" );
+    }
+
+    @Benchmark
+    public int fromKieContainer() {
+        KieServices kieServices = KieServices.get();
+        kieServices.getRepository().addKieModule( new CanonicalKieModule( releaseId, BenchmarkUtil.getDefaultKieModuleModel( kieServices ), kjarFile ) );
+        return fireFirstRule( kieServices.newKieContainer( releaseId ).newKieSession() );
+    }
+
+    @Benchmark
+    public ClassLoader loadClasses() throws Exception {
+        ClassLoader classLoader = new URLClassLoader( new URL[] { kjarFile.toURI().toURL() }, getClass().getClassLoader() );
+        try (JarFile jarFile = new JarFile( kjarFile )) {
+            for (JarEntry entry : Collections.list( jarFile.entries() )) {
+                String name = entry.getName();
+                if (name.endsWith( ".class" )) {
+                    classLoader.loadClass( name.substring( 0, name.length() - ".class".length() ).replace( '/', '.' ) );
+                }
+            }
+        }
+        return classLoader;
+    }
+
+    @Benchmark
+    public CanonicalModelRegistry instantiateModels() throws Exception {
+        return instantiateModels( loadClasses() );
+    }
+
+    @Benchmark
+    public KieBase buildKieBase() throws Exception {
+        return buildKieBase( loadClasses() );
+    }
+
+    @Benchmark
+    public int fireFirstRule() throws Exception {
+        return fireFirstRule( buildKieBase( loadClasses() ).newKieSession() );
+    }
+
+    private static CanonicalModelRegistry instantiateModels( ClassLoader classLoader ) throws Exception {
+        CanonicalModelRegistry registry = (CanonicalModelRegistry) classLoader.loadClass( MODEL_REGISTRY_PACKAGE + "." + MODEL_REGISTRY_FILE_NAME ).newInstance();
+        List<Model> models = registry.getModels();
+        // the rules of the generated models are built lazily
+        models.forEach( Model::getRules );
+        return registry;
+    }
+
+    private static KieBase buildKieBase( ClassLoader classLoader ) throws Exception {
+        CanonicalModelRegistry registry = instantiateModels( classLoader );
+        KieBaseBuilder builder = new KieBaseBuilder( null, classLoader, null )
+                .registerTypes( registry.getPatternClasses(), registry.getEventClasses(), registry.getImmutableClasses() );
+        registry.getModels().forEach( builder::addModel );
+        return builder.createKieBase();
+    }
+
+    private static String getKJarName( int numberOfRules, int numberOfRulesPerFile ) {
+        return "cold-start-kjar-" + numberOfRules + "-" + numberOfRulesPerFile;
+    }
+
+    public static void main( String[] args ) throws Exception {
+        File kjarsDir = Files.createTempDirectory( "cold-start-kjars" ).toFile();
+        try {
+            KieServices kieServices = KieServices.get();
+            for (String numberOfRules : getParamValues( "numberOfRules" )) {
+                for (String numberOfRulesPerFile : getParamValues( "numberOfRulesPerFile" )) {
+                    String kjarName = getKJarName( Integer.parseInt( numberOfRules ), Integer.parseInt( numberOfRulesPerFile ) );
+                    File kjarFile = BenchmarkUtil.createCanonicalJarFile( kieServices, kieServices.newReleaseId( "org.kie", kjarName, "1.0" ),
+                                                                          Integer.parseInt( numberOfRules ), Integer.parseInt( numberOfRulesPerFile ) );
+                    Files.move( kjarFile.toPath(), new File( kjarsDir, kjarName + ".jar" ).toPath() );
+                }
+            }
+
+            new Runner( new OptionsBuilder()
+                                .include( ColdStartBenchmark.class.getSimpleName() )
+                                .jvmArgsAppend( "-D" + KJARS_DIR_PROPERTY + "=" + kjarsDir.getAbsolutePath() )
+                                .build() ).run();
+        } finally {
+            File[] kjarFiles = kjarsDir.listFiles();
+            if (kjarFiles != null) {
+                for (File kjarFile : kjarFiles) {
+                    kjarFile.delete();
+                }
+            }
+            kjarsDir.delete();
+        }
+    }
+
+    private static String[] getParamValues( String paramName ) throws NoSuchFieldException {
+        return ColdStartBenchmark.class.getDeclaredField( paramName ).getAnnotation( Param.class ).value();
+    }
+
+    private static int fireFirstRule( KieSession kieSession ) {
+        try {
+            // matches the first rule of the first generated file
+            kieSession.insert( new Person( "Mark_1_1", 37 ) );
+            kieSession.insert( new Person( "Edson", 40 ) );
+            return kieSession.fireAllRules();
+        } finally {
+            kieSession.dispose();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package org.drools.modelcompiler.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.drools.modelcompiler.Person;
+import org.drools.modelcompiler.benchmark.RuntimeBenchmark.Scenario;
+import org.drools.modelcompiler.builder.KieBaseBuilder;
+import org.kie.api.KieBase;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.rule.FactHandle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Runs many sessions concurrently on the same KieBase built from the executable model, each thread owning its session.
+ * The same operations are repeated with 1, 2, 4 and as many threads as the available cores: the reported throughput
+ * is the aggregate one of all the threads, so the per thread throughput is obtained dividing it by the number of threads.
+ * A per thread throughput decreasing with the number of threads reveals a contention, or false sharing, on the
+ * structures shared through the KieBase, like the lambda constraints, their read accessors and the lazily
+ * initialized state of the nodes.
+ * The newSession operations create a session for each invocation, also covering the initialization of the shared
+ * state, while the existingSession ones update all the facts of a long lived session.
+ */
+@Fork(1)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5, time = 5, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 5, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ConcurrentSessionsBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class SharedKieBase {
+
+        @Param({"ALPHA", "JOIN", "ACCUMULATE", "NOT_EXISTS"})
+        private Scenario scenario;
+
+        @Param({"1000"})
+        private int numberOfFacts;
+
+        private KieBase kieBase;
+
+        @Setup(Level.Trial)
+        public void setUpKieBase() {
+            kieBase = KieBaseBuilder.createKieBaseFromModel( RuntimeBenchmark.getModel( scenario, true ) );
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadSession {
+
+        private List<Person> facts;
+        private KieSession kieSession;
+        private List<FactHandle> factHandles;
+
+        @Setup(Level.Iteration)
+        public void setUpSession( SharedKieBase shared ) {
+            facts = RuntimeBenchmark.createFacts( shared.numberOfFacts );
+            kieSession = shared.kieBase.newKieSession();
+            factHandles = new ArrayList<>( facts.size() );
+            for (Person fact : facts) {
+                factHandles.add( kieSession.insert( fact ) );
+            }
+            kieSession.fireAllRules();
+        }
+
+        @TearDown(Level.Iteration)
+        public void disposeSession() {
+            kieSession.dispose();
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int newSession1Thread( SharedKieBase shared, ThreadSession session ) {
+        return insertAndFire( shared, session );
+    }
+
+    @Benchmark
+    @Threads(2)
+    public int newSession2Threads( SharedKieBase shared, ThreadSession session ) {
+        return insertAndFire( shared, session );
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int newSession4Threads( SharedKieBase shared, ThreadSession session ) {
+        return insertAndFire( shared, session );
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public int newSessionAllCores( SharedKieBase shared, ThreadSession session ) {
+        return insertAndFire( shared, session );
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int existingSession1Thread( ThreadSession session ) {
+        return updateAndFire( session );
+    }
+
+    @Benchmark
+    @Threads(2)
+    public int existingSession2Threads( ThreadSession session ) {
+        return updateAndFire( session );
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int existingSession4Threads( ThreadSession session ) {
+        return updateAndFire( session );
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public int existingSessionAllCores( ThreadSession session ) {
+        return updateAndFire( session );
+    }
+
+    private static int insertAndFire( SharedKieBase shared, ThreadSession session ) {
+        KieSession kieSession = shared.kieBase.newKieSession();
+        try {
+            for (Person fact : session.facts) {
+                kieSession.insert( fact );
+            }
+            return kieSession.fireAllRules();
+        } finally {
+            kieSession.dispose();
+        }
+    }
+
+    private static int updateAndFire( ThreadSession session ) {
+        for (int i = 0; i < session.factHandles.size(); i++) {
+            Person fact = session.facts.get( i );
+            fact.setAge( ( fact.getAge() + 1 ) % 100 );
+            session.kieSession.update( session.factHandles.get( i ), fact, "age" );
+        }
+        return session.kieSession.fireAllRules();
+    }
+}
@@ -0,0 +1,229 @@
+package org.drools.modelcompiler.benchmark;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.drools.core.ClockType;
+import org.drools.core.impl.KnowledgeBaseFactory;
+import org.drools.model.Query1;
+import org.drools.model.Variable;
+import org.drools.model.impl.ModelImpl;
+import org.drools.modelcompiler.CompilerTestRules;
+import org.drools.modelcompiler.Person;
+import org.drools.modelcompiler.StockTick;
+import org.drools.modelcompiler.builder.KieBaseBuilder;
+import org.kie.api.KieBase;
+import org.kie.api.conf.EventProcessingOption;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.KieSessionConfiguration;
+import org.kie.api.runtime.conf.ClockTypeOption;
+import org.kie.api.time.SessionPseudoClock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import static org.drools.model.DSL.*;
+import static org.drools.modelcompiler.CompilerTestRules.*;
+
+/**
+ * Runs the same rules, built from the {@link CompilerTestRules} shared with the CompilerTest, once with the DRL engine
+ * and once with the executable model generated from them, so every tested language construct has a performance
+ * comparison between the two. Each invocation creates a session, inserts the facts, fires the rules (or runs the query)
+ * and disposes the session.
+ * The query is written with the DSL as in the FlowTest, since the generation of the executable model doesn't support
+ * queries yet. Running the main method executes all the pairs with the GC profiler and prints, for each scenario,
+ * the throughput and the allocations per operation of the model relative to the DRL.
+ */
+@Fork(1)
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DifferentialBenchmark {
+
+    public enum Scenario {
+        BETA, OR, NOT, EXISTS, ACCUMULATE, MODIFY, QUERY, AFTER, SLIDING_WINDOW;
+
+        boolean isCep() {
+            return this == AFTER || this == SLIDING_WINDOW;
+        }
+    }
+
+    public enum Engine {
+        DRL, MODEL
+    }
+
+    private static final int MARK_AGE = 37;
+
+    @Param({"BETA", "OR", "NOT", "EXISTS", "ACCUMULATE", "MODIFY", "QUERY", "AFTER", "SLIDING_WINDOW"})
+    private Scenario scenario;
+
+    @Param({"DRL", "MODEL"})
+    private Engine engine;
+
+    @Param({"1000"})
+    private int numberOfFacts;
+
+    private KieBase kieBase;
+    private KieSessionConfiguration sessionConfiguration;
+    private List<Person> facts;
+
+    @Setup(Level.Trial)
+    public void setUpKieBase() {
+        EventProcessingOption eventProcessingOption = scenario.isCep() ? EventProcessingOption.STREAM : EventProcessingOption.CLOUD;
+        if (engine == Engine.DRL) {
+            kieBase = BenchmarkUtil.createKieBaseFromDrl( getDrl( scenario ), eventProcessingOption );
+        } else if (scenario == Scenario.QUERY) {
+            kieBase = KieBaseBuilder.createKieBaseFromModel( getQueryModel() );
+        } else {
+            kieBase = BenchmarkUtil.createCanonicalKieBaseFromDrl( getDrl( scenario ), eventProcessingOption );
+        }
+
+        sessionConfiguration = KnowledgeBaseFactory.newKnowledgeSessionConfiguration();
+        if (scenario.isCep()) {
+            sessionConfiguration.setOption( ClockTypeOption.get( ClockType.PSEUDO_CLOCK.getId() ) );
+        }
+        facts = RuntimeBenchmark.createFacts( numberOfFacts );
+    }
+
+    @Benchmark
+    public int run() {
+        KieSession kieSession = kieBase.newKieSession( sessionConfiguration, null );
+        try {
+            return scenario.isCep() ? insertEventsAndFire( kieSession ) : insertFactsAndFire( kieSession );
+        } finally {
+            kieSession.dispose();
+        }
+    }
+
+    private int insertFactsAndFire( KieSession kieSession ) {
+        // Mark is the first fact, his age is the only one changed by the MODIFY scenario
+        facts.get( 0 ).setAge( MARK_AGE );
+        for (Person fact : facts) {
+            kieSession.insert( fact );
+        }
+        if (scenario == Scenario.QUERY) {
+            return kieSession.getQueryResults( "olderThan", 50 ).size();
+        }
+        return kieSession.fireAllRules();
+    }
+
+    private int insertEventsAndFire( KieSession kieSession ) {
+        SessionPseudoClock clock = kieSession.getSessionClock();
+        for (int i = 0; i < numberOfFacts; i++) {
+            kieSession.insert( new StockTick( i % 2 == 0 ? "DROO" : "ACME" ) );
+            clock.advanceTime( 1, TimeUnit.SECONDS );
+        }
+        return kieSession.fireAllRules();
+    }
+
+    static String getDrl( Scenario scenario ) {
+        StringBuilder sb = new StringBuilder();
+        sb.append( "package org.drools.modelcompiler.benchmarks;\n" );
+        sb.append( "import " + Person.class.getCanonicalName() + ";\n" );
+        sb.append( "import " + StockTick.class.getCanonicalName() + ";\n" );
+        switch (scenario) {
+            case BETA:
+                sb.append( getRule( BETA_PATTERNS ) );
+                break;
+            case OR:
+                sb.append( getRule( OR_PATTERNS ) );
+                break;
+            case NOT:
+                sb.append( getRule( NOT_PATTERN ) );
+                break;
+            case EXISTS:
+                sb.append( getRule( EXISTS_PATTERN ) );
+                break;
+            case ACCUMULATE:
+                sb.append( getRule( ACCUMULATE_PATTERN ) );
+                break;
+            case MODIFY:
+                sb.append( MODIFY_RULE );
+                break;
+            case QUERY:
+                sb.append( OLDER_THAN_QUERY );
+                break;
+            case AFTER:
+                sb.append( getRule( AFTER_PATTERNS ) );
+                break;
+            case SLIDING_WINDOW:
+                sb.append( getRule( SLIDING_WINDOW_PATTERN ) );
+                break;
+        }
+        return sb.toString();
+    }
+
+    private static String getRule( String patterns ) {
+        return "rule R when\n" + patterns + "then end\n";
+    }
+
+    static ModelImpl getQueryModel() {
+        Variable<Person> personV = declarationOf( type( Person.class ), "$p" );
+        Variable<Integer> ageV = declarationOf( type( Integer.class ) );
+
+        Query1<Integer> query = query( "olderThan", ageV )
+                .view( expr( "exprOlder", personV, ageV, (p, a) -> p.getAge() > a ) );
+
+        return new ModelImpl().addQuery( query );
+    }
+
+    public static void main( String[] args ) throws Exception {
+        Collection<RunResult> results = new Runner( new OptionsBuilder()
+                                                            .include( DifferentialBenchmark.class.getSimpleName() )
+                                                            .addProfiler( GCProfiler.class )
+                                                            .build() ).run();
+
+        Map<String, RunResult[]> resultsByScenario = new TreeMap<>();
+        for (RunResult result : results) {
+            String scenario = result.getParams().getParam( "scenario" );
+            Engine engine = Engine.valueOf( result.getParams().getParam( "engine" ) );
+            resultsByScenario.computeIfAbsent( scenario, s -> new RunResult[Engine.values().length] )[engine.ordinal()] = result;
+        }
+
+        System.out.println( String.format( "%-16s %14s %14s %8s %12s %12s %8s",
+                                           "scenario", "DRL ops/s", "MODEL ops/s", "ratio", "DRL B/op", "MODEL B/op", "ratio" ) );
+        for (Map.Entry<String, RunResult[]> entry : resultsByScenario.entrySet()) {
+            RunResult drl = entry.getValue()[Engine.DRL.ordinal()];
+            RunResult model = entry.getValue()[Engine.MODEL.ordinal()];
+            if (drl == null || model == null) {
+                continue;
+            }
+            double drlThroughput = drl.getPrimaryResult().getScore();
+            double modelThroughput = model.getPrimaryResult().getScore();
+            double drlAllocations = getAllocationsPerOperation( drl );
+            double modelAllocations = getAllocationsPerOperation( model );
+            System.out.println( String.format( "%-16s %14.1f %14.1f %8.2f %12.0f %12.0f %8.2f",
+                                               entry.getKey(), drlThroughput, modelThroughput, modelThroughput / drlThroughput,
+                                               drlAllocations, modelAllocations, modelAllocations / drlAllocations ) );
+        }
+    }
+
+    private static double getAllocationsPerOperation( RunResult runResult ) {
+        for (Map.Entry<String, Result> entry : runResult.getSecondaryResults().entrySet()) {
+            // the label is prefixed by a middle dot, like all the ones of the GC profiler
+            if (entry.getKey().endsWith( "gc.alloc.rate.norm" )) {
+                return entry.getValue().getScore();
+            }
+        }
+        return Double.NaN;
+    }
+}
@@ -0,0 +1,242 @@
+package org.drools.modelcompiler.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.drools.model.Index.ConstraintType;
+import org.drools.model.Variable;
+import org.drools.model.impl.ModelImpl;
+import org.drools.modelcompiler.benchmark.BuildFromKJarBenchmark.BenchmarkType;
+import org.drools.modelcompiler.builder.KieBaseBuilder;
+import org.drools.modelcompiler.fireandalarm.model.Alarm;
+import org.drools.modelcompiler.fireandalarm.model.Fire;
+import org.drools.modelcompiler.fireandalarm.model.Room;
+import org.drools.modelcompiler.fireandalarm.model.Sprinkler;
+import org.kie.api.KieBase;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.rule.FactHandle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static org.drools.model.DSL.*;
+
+/**
+ * Runs the fire and alarm rules, built from DRL and from the executable model, on a building with numberOfRooms
+ * rooms, each of them with a sprinkler, and a fire in one room every FIRE_RATIO.
+ * The insertFacts benchmark measures the insertion cost alone, fireAllRules the chained propagation of the
+ * modifications turning on the sprinklers together with the exists raising the alarm, while extinguishFires
+ * measures the deletion of the fires and the consequent re-evaluation of the nots.
+ * Each iteration runs a single invocation, since the bigger buildings take seconds.
+ */
+@Fork(1)
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FireAndAlarmBenchmark {
+
+    private static final int FIRE_RATIO = 10;
+
+    @Param({"DRL", "MODEL"})
+    private BenchmarkType type;
+
+    @Param({"10", "1000", "100000", "1000000"})
+    private int numberOfRooms;
+
+    private KieBase kieBase;
+
+    private List<Room> rooms;
+    private List<Sprinkler> sprinklers;
+    private List<Fire> fires;
+
+    @Setup(Level.Trial)
+    public void setUpKieBase() {
+        kieBase = type.useRuleModel ?
+                  KieBaseBuilder.createKieBaseFromModel( getModel() ) :
+                  BenchmarkUtil.createKieBaseFromDrl( getDrl() );
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpFacts() {
+        // the sprinklers are modified by the rules, so the facts are created again for each iteration
+        rooms = new ArrayList<>( numberOfRooms );
+        sprinklers = new ArrayList<>( numberOfRooms );
+        fires = new ArrayList<>( numberOfRooms / FIRE_RATIO + 1 );
+        for (int i = 0; i < numberOfRooms; i++) {
+            Room room = new Room( "Room " + i );
+            rooms.add( room );
+            sprinklers.add( new Sprinkler( room ) );
+            if (i % FIRE_RATIO == 0) {
+                fires.add( new Fire( room ) );
+            }
+        }
+    }
+
+    @Benchmark
+    public long insertFacts() {
+        KieSession session = kieBase.newKieSession();
+        try {
+            insertFacts( session );
+            return session.getFactCount();
+        } finally {
+            session.dispose();
+        }
+    }
+
+    @Benchmark
+    public int fireAllRules( LoadedBuilding building ) {
+        return building.kieSession.fireAllRules();
+    }
+
+    @Benchmark
+    public int extinguishFires( BurningBuilding building ) {
+        for (FactHandle fireHandle : building.fireHandles) {
+            building.kieSession.delete( fireHandle );
+        }
+        return building.kieSession.fireAllRules();
+    }
+
+    /**
+     * A session containing all the rooms, sprinklers and fires, where the rules haven't been fired yet.
+     */
+    @State(Scope.Thread)
+    public static class LoadedBuilding {
+
+        KieSession kieSession;
+
+        @Setup(Level.Iteration)
+        public void setUpSession( FireAndAlarmBenchmark benchmark ) {
+            kieSession = benchmark.kieBase.newKieSession();
+            benchmark.insertFacts( kieSession );
+        }
+
+        @TearDown(Level.Iteration)
+        public void disposeSession() {
+            kieSession.dispose();
+        }
+    }
+
+    /**
+     * A session where the rules have already turned on the sprinklers of the burning rooms and raised the alarm.
+     */
+    @State(Scope.Thread)
+    public static class BurningBuilding {
+
+        KieSession kieSession;
+        List<FactHandle> fireHandles;
+
+        @Setup(Level.Iteration)
+        public void setUpSession( FireAndAlarmBenchmark benchmark ) {
+            kieSession = benchmark.kieBase.newKieSession();
+            fireHandles = benchmark.insertFacts( kieSession );
+            kieSession.fireAllRules();
+        }
+
+        @TearDown(Level.Iteration)
+        public void disposeSession() {
+            kieSession.dispose();
+        }
+    }
+
+    private List<FactHandle> insertFacts( KieSession session ) {
+        for (Room room : rooms) {
+            session.insert( room );
+        }
+        for (Sprinkler sprinkler : sprinklers) {
+            session.insert( sprinkler );
+        }
+        List<FactHandle> fireHandles = new ArrayList<>( fires.size() );
+        for (Fire fire : fires) {
+            fireHandles.add( session.insert( fire ) );
+        }
+        return fireHandles;
+    }
+
+    static String getDrl() {
+        return "package org.drools.modelcompiler.benchmarks;\n" +
+               "import " + Alarm.class.getCanonicalName() + ";\n" +
+               "import " + Fire.class.getCanonicalName() + ";\n" +
+               "import " + Room.class.getCanonicalName() + ";\n" +
+               "import " + Sprinkler.class.getCanonicalName() + ";\n" +
+               "rule \"When there is a fire turn on the sprinkler\" when\n" +
+               "  Fire( $room : room )\n" +
+               "  $sprinkler : Sprinkler( room == $room, !on )\n" +
+               "then\n" +
+               "  modify( $sprinkler ) { setOn( true ) };\n" +
+               "end\n" +
+               "rule \"When the fire is gone turn off the sprinkler\" when\n" +
+               "  $sprinkler : Sprinkler( $room : room, on == true )\n" +
+               "  not Fire( room == $room )\n" +
+               "then\n" +
+               "  modify( $sprinkler ) { setOn( false ) };\n" +
+               "end\n" +
+               "rule \"Raise the alarm when we have one or more fires\" when\n" +
+               "  exists Fire()\n" +
+               "then\n" +
+               "  insert( new Alarm() );\n" +
+               "end\n" +
+               "rule \"Lower the alarm when all the fires have gone\" when\n" +
+               "  not Fire()\n" +
+               "  $alarm : Alarm()\n" +
+               "then\n" +
+               "  delete( $alarm );\n" +
+               "end\n" +
+               "rule \"Status output when things are ok\" when\n" +
+               "  not Alarm()\n" +
+               "  not Sprinkler( on )\n" +
+               "then end\n";
+    }
+
+    static ModelImpl getModel() {
+        Variable<Fire> fireV = declarationOf( type( Fire.class ) );
+        Variable<Sprinkler> sprinklerV = declarationOf( type( Sprinkler.class ) );
+        Variable<Alarm> alarmV = declarationOf( type( Alarm.class ) );
+
+        ModelImpl model = new ModelImpl();
+        model.addRule( rule( "When there is a fire turn on the sprinkler" )
+                               .view( expr( "exprOff", sprinklerV, s -> !s.isOn() )
+                                              .reactOn( "on" ),
+                                      expr( "exprFireRoom", sprinklerV, fireV, (s, f) -> s.getRoom().equals( f.getRoom() ) )
+                                              .indexedBy( Room.class, ConstraintType.EQUAL, Sprinkler::getRoom, Fire::getRoom )
+                                              .reactOn( "room" ) )
+                               .then( on( sprinklerV ).execute( (drools, s) -> {
+                                   s.setOn( true );
+                                   drools.update( s, "on" );
+                               } ) ) );
+        model.addRule( rule( "When the fire is gone turn off the sprinkler" )
+                               .view( expr( "exprOn", sprinklerV, Sprinkler::isOn )
+                                              .reactOn( "on" ),
+                                      not( expr( "exprNoFireRoom", fireV, sprinklerV, (f, s) -> f.getRoom().equals( s.getRoom() ) )
+                                                   .indexedBy( Room.class, ConstraintType.EQUAL, Fire::getRoom, Sprinkler::getRoom )
+                                                   .reactOn( "room" ) ) )
+                               .then( on( sprinklerV ).execute( (drools, s) -> {
+                                   s.setOn( false );
+                                   drools.update( s, "on" );
+                               } ) ) );
+        model.addRule( rule( "Raise the alarm when we have one or more fires" )
+                               .view( exists( fireV ) )
+                               .then( execute( drools -> drools.insert( new Alarm() ) ) ) );
+        model.addRule( rule( "Lower the alarm when all the fires have gone" )
+                               .view( not( fireV ),
+                                      input( alarmV ) )
+                               .then( on( alarmV ).execute( (drools, a) -> drools.delete( a ) ) ) );
+        model.addRule( rule( "Status output when things are ok" )
+                               .view( not( alarmV ),
+                                      not( expr( "exprAnyOn", sprinklerV, Sprinkler::isOn ).reactOn( "on" ) ) )
+                               .then( execute( () -> { } ) ) );
+        return model;
+    }
+}
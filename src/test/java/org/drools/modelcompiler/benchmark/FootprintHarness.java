@@ -0,0 +1,145 @@
+package org.drools.modelcompiler.benchmark;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.List;
+import java.util.Map;
+
+import org.drools.core.definitions.rule.impl.RuleImpl;
+import org.drools.core.reteoo.BaseNode;
+import org.drools.model.Index.ConstraintType;
+import org.drools.model.Variable;
+import org.drools.model.impl.ModelImpl;
+import org.drools.modelcompiler.CanonicalModelRegistry;
+import org.drools.modelcompiler.Person;
+import org.drools.modelcompiler.RuleContext;
+import org.drools.modelcompiler.benchmark.RuntimeBenchmark.Scenario;
+import org.drools.modelcompiler.builder.KieBaseBuilder;
+import org.drools.modelcompiler.consequence.LambdaConsequence;
+import org.drools.modelcompiler.constraints.ConstraintEvaluator;
+import org.drools.modelcompiler.constraints.LambdaConstraint;
+import org.kie.api.KieBase;
+import org.kie.api.KieServices;
+import org.kie.api.runtime.KieSession;
+
+import static org.drools.model.DSL.*;
+import static org.drools.modelcompiler.CanonicalKieModule.MODEL_REGISTRY_FILE_NAME;
+import static org.drools.modelcompiler.CanonicalKieModule.MODEL_REGISTRY_PACKAGE;
+
+/**
+ * Measures the retained heap of canonical KieBases with the given numbers of rules (1000, 10000 and 100000 by default),
+ * broken down by kind of engine structure, and the retained heap of a session per inserted fact and per join tuple.
+ * The heap is walked by the HeapWalker, so no agent is required: it can be run locally from the IDE
+ * or with exec:java, giving it enough heap for the biggest KieBase.
+ */
+public class FootprintHarness {
+
+    private static final int NUMBER_OF_FACTS = 10000;
+
+    public static void main( String[] args ) throws Exception {
+        int[] numbersOfRules = args.length > 0 ? parse( args ) : new int[] { 1000, 10000, 100000 };
+        for (int numberOfRules : numbersOfRules) {
+            printKieBaseFootprint( numberOfRules );
+        }
+        printFactFootprint();
+        printTupleFootprint();
+    }
+
+    private static void printKieBaseFootprint( int numberOfRules ) throws Exception {
+        KieServices kieServices = KieServices.get();
+        File kjarFile = BenchmarkUtil.createCanonicalJarFile( kieServices, kieServices.newReleaseId( "org.kie", "footprint-kjar-" + numberOfRules, "1.0" ),
+                                                              numberOfRules, 1000 );
+        KieBase kieBase = createKieBase( kjarFile );
+
+        HeapWalker walker = new HeapWalker( FootprintHarness::classify ).walk( kieBase );
+        System.out.println( "KieBase with " + numberOfRules + " rules: " + walker.getTotalSize() + " bytes in " +
+                            walker.getObjectsCount() + " objects, " + ( walker.getTotalSize() / numberOfRules ) + " bytes per rule" );
+        for (Map.Entry<String, Long> entry : walker.getSizeByCategory().entrySet()) {
+            System.out.println( "  " + entry.getKey() + ": " + entry.getValue() + " bytes, " + ( entry.getValue() / numberOfRules ) + " bytes per rule" );
+        }
+    }
+
+    private static KieBase createKieBase( File kjarFile ) throws Exception {
+        ClassLoader classLoader = new URLClassLoader( new URL[] { kjarFile.toURI().toURL() }, FootprintHarness.class.getClassLoader() );
+        CanonicalModelRegistry registry = (CanonicalModelRegistry) classLoader.loadClass( MODEL_REGISTRY_PACKAGE + "." + MODEL_REGISTRY_FILE_NAME ).newInstance();
+        KieBaseBuilder builder = new KieBaseBuilder( null, classLoader, null )
+                .registerTypes( registry.getPatternClasses(), registry.getEventClasses(), registry.getImmutableClasses() );
+        registry.getModels().forEach( builder::addModel );
+        return builder.createKieBase();
+    }
+
+    private static void printFactFootprint() {
+        // a rule never matched, so the session contains only the facts and their handles
+        Variable<Person> personV = declarationOf( type( Person.class ) );
+        ModelImpl model = new ModelImpl().addRule( rule( "R" )
+                                                           .view( expr( "exprNegativeAge", personV, p -> p.getAge() < 0 )
+                                                                          .indexedBy( int.class, ConstraintType.LESS_THAN, Person::getAge, 0 )
+                                                                          .reactOn( "age" ) )
+                                                           .then( on( personV ).execute( p -> { } ) ) );
+        KieBase kieBase = KieBaseBuilder.createKieBaseFromModel( model );
+
+        long emptySession = getSessionSize( kieBase, null );
+        long fullSession = getSessionSize( kieBase, RuntimeBenchmark.createFacts( NUMBER_OF_FACTS ) );
+        System.out.println( "Session with " + NUMBER_OF_FACTS + " facts: " + ( ( fullSession - emptySession ) / NUMBER_OF_FACTS ) + " bytes per fact" );
+    }
+
+    private static void printTupleFootprint() {
+        // the same facts either all joining with Mark or none of them, so the difference is made only by the tuples
+        KieBase kieBase = KieBaseBuilder.createKieBaseFromModel( RuntimeBenchmark.getModel( Scenario.JOIN, true ) );
+
+        List<Person> notJoiningFacts = RuntimeBenchmark.createFacts( NUMBER_OF_FACTS );
+        notJoiningFacts.get( 0 ).setAge( Integer.MAX_VALUE );
+        List<Person> joiningFacts = RuntimeBenchmark.createFacts( NUMBER_OF_FACTS );
+        joiningFacts.get( 0 ).setAge( -1 );
+
+        long withoutTuples = getSessionSize( kieBase, notJoiningFacts );
+        long withTuples = getSessionSize( kieBase, joiningFacts );
+        int numberOfTuples = NUMBER_OF_FACTS - 1;
+        System.out.println( "Session with " + numberOfTuples + " join tuples: " + ( ( withTuples - withoutTuples ) / numberOfTuples ) + " bytes per tuple" );
+    }
+
+    private static long getSessionSize( KieBase kieBase, List<Person> facts ) {
+        // the KieBase is excluded before creating the session, since it also references the sessions created from it
+        HeapWalker walker = new HeapWalker( FootprintHarness::classify ).exclude( kieBase );
+        KieSession kieSession = kieBase.newKieSession();
+        try {
+            if (facts != null) {
+                facts.forEach( kieSession::insert );
+                kieSession.fireAllRules();
+                // the facts themselves belong to the application, only the engine structures are measured
+                walker.excludeOnly( facts );
+            }
+            return walker.walk( kieSession ).getTotalSize();
+        } finally {
+            kieSession.dispose();
+        }
+    }
+
+    private static String classify( Object obj ) {
+        if (obj instanceof RuleImpl) {
+            return "RuleImpl";
+        }
+        if (obj instanceof LambdaConstraint || obj instanceof ConstraintEvaluator) {
+            return "LambdaConstraint/ConstraintEvaluator";
+        }
+        if (obj instanceof LambdaConsequence || obj instanceof RuleContext) {
+            return "LambdaConsequence/RuleContext";
+        }
+        if (obj.getClass().isSynthetic() && obj.getClass().getName().contains( "$$Lambda$" )) {
+            return "lambdas";
+        }
+        if (obj instanceof BaseNode) {
+            return "network nodes";
+        }
+        return "other";
+    }
+
+    private static int[] parse( String[] args ) {
+        int[] numbers = new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            numbers[i] = Integer.parseInt( args[i] );
+        }
+        return numbers;
+    }
+}
@@ -0,0 +1,174 @@
+package org.drools.modelcompiler.benchmark;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Walks the object graph reachable from a root, estimating the retained heap of each reached object, so the
+ * footprint of the engine structures can be measured without an instrumentation agent.
+ * The sizes are estimated for a 64-bit JVM with compressed oops, so they are meant to be compared between runs
+ * rather than to be exact. Classes, class loaders and threads are never walked, as they aren't owned by the root.
+ */
+public class HeapWalker {
+
+    private static final int OBJECT_HEADER = 12;
+    private static final int ARRAY_HEADER = 16;
+    private static final int REFERENCE = 4;
+    private static final int ALIGNMENT = 8;
+
+    private static final Map<Class<?>, ClassLayout> LAYOUTS = new ConcurrentHashMap<>();
+
+    private final Set<Object> visited = Collections.newSetFromMap( new IdentityHashMap<>() );
+    private final Function<Object, String> classifier;
+
+    private final Map<String, Long> sizeByCategory = new TreeMap<>();
+    private long totalSize;
+    private long objectsCount;
+
+    public HeapWalker( Function<Object, String> classifier ) {
+        this.classifier = classifier;
+    }
+
+    /**
+     * Excludes from the following walks all the objects reachable from the given one,
+     * like the KieBase of a session whose own footprint has to be measured.
+     */
+    public HeapWalker exclude( Object root ) {
+        new HeapWalker( o -> "" ).walk( root, visited );
+        return this;
+    }
+
+    /**
+     * Excludes the given objects, but not the ones reachable from them.
+     */
+    public HeapWalker excludeOnly( Iterable<?> objects ) {
+        objects.forEach( visited::add );
+        return this;
+    }
+
+    public HeapWalker walk( Object root ) {
+        return walk( root, visited );
+    }
+
+    private HeapWalker walk( Object root, Set<Object> visited ) {
+        Deque<Object> stack = new ArrayDeque<>();
+        push( stack, visited, root );
+        while (!stack.isEmpty()) {
+            Object obj = stack.pop();
+            Class<?> clazz = obj.getClass();
+
+            long size;
+            if (clazz.isArray()) {
+                int length = Array.getLength( obj );
+                Class<?> componentType = clazz.getComponentType();
+                size = align( ARRAY_HEADER + (long) length * sizeOf( componentType ) );
+                if (!componentType.isPrimitive()) {
+                    for (int i = 0; i < length; i++) {
+                        push( stack, visited, Array.get( obj, i ) );
+                    }
+                }
+            } else {
+                ClassLayout layout = LAYOUTS.computeIfAbsent( clazz, ClassLayout::new );
+                size = layout.size;
+                for (Field field : layout.referenceFields) {
+                    try {
+                        push( stack, visited, field.get( obj ) );
+                    } catch (IllegalAccessException e) {
+                        throw new RuntimeException( e );
+                    }
+                }
+            }
+
+            totalSize += size;
+            objectsCount++;
+            sizeByCategory.merge( classifier.apply( obj ), size, Long::sum );
+        }
+        return this;
+    }
+
+    private static void push( Deque<Object> stack, Set<Object> visited, Object obj ) {
+        if (obj != null && !isShared( obj ) && visited.add( obj )) {
+            stack.push( obj );
+        }
+    }
+
+    private static boolean isShared( Object obj ) {
+        return obj instanceof Class || obj instanceof ClassLoader || obj instanceof Thread;
+    }
+
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    public long getObjectsCount() {
+        return objectsCount;
+    }
+
+    public Map<String, Long> getSizeByCategory() {
+        return sizeByCategory;
+    }
+
+    private static long align( long size ) {
+        return ( size + ALIGNMENT - 1 ) / ALIGNMENT * ALIGNMENT;
+    }
+
+    private static int sizeOf( Class<?> type ) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        }
+        if (type == int.class || type == float.class) {
+            return 4;
+        }
+        if (type == short.class || type == char.class) {
+            return 2;
+        }
+        if (type == byte.class || type == boolean.class) {
+            return 1;
+        }
+        return REFERENCE;
+    }
+
+    private static class ClassLayout {
+
+        private final long size;
+        private final List<Field> referenceFields = new ArrayList<>();
+
+        private ClassLayout( Class<?> clazz ) {
+            long fieldsSize = 0;
+            for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (Modifier.isStatic( field.getModifiers() )) {
+                        continue;
+                    }
+                    fieldsSize += sizeOf( field.getType() );
+                    if (!field.getType().isPrimitive() && isAccessible( field )) {
+                        referenceFields.add( field );
+                    }
+                }
+            }
+            this.size = align( OBJECT_HEADER + fieldsSize );
+        }
+
+        private static boolean isAccessible( Field field ) {
+            try {
+                field.setAccessible( true );
+                return true;
+            } catch (RuntimeException e) {
+                // a field of a class in a module not open to reflection, its value is not walked
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package org.drools.modelcompiler.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.drools.model.Index.ConstraintType;
+import org.drools.model.Rule;
+import org.drools.model.Variable;
+import org.drools.model.functions.Predicate1;
+import org.drools.model.impl.ModelImpl;
+import org.drools.model.view.Expr1ViewItem;
+import org.drools.modelcompiler.Person;
+import org.drools.modelcompiler.benchmark.BuildFromKJarBenchmark.BenchmarkType;
+import org.kie.api.KieBase;
+import org.kie.api.conf.EventProcessingOption;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.rule.FactHandle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static org.drools.model.DSL.*;
+
+/**
+ * Measures the runtime throughput of the same rules built from DRL and from the executable model, that the canonical
+ * compiler generates from the same DRL. Each invocation works on numberOfFacts facts, so the facts per second rate is
+ * numberOfFacts divided by the reported time. The sample time mode also reports the latency percentiles,
+ * while the allocation rate can be obtained running with -prof gc.
+ * Only the update and delete benchmarks use a session already containing the facts, prepared before each invocation,
+ * so the insert one doesn't pay for its setup.
+ */
+@Fork(1)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@Warmup(iterations = 5, time = 5, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 5, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RuntimeBenchmark {
+
+    public enum Scenario {
+        ALPHA, JOIN, ACCUMULATE, NOT_EXISTS
+    }
+
+    @State(Scope.Thread)
+    public static class Rules {
+
+        // the generated executable model always has the expression ids
+        @Param({"DRL", "MODEL"})
+        private BenchmarkType type;
+
+        @Param({"ALPHA", "JOIN", "ACCUMULATE", "NOT_EXISTS"})
+        private Scenario scenario;
+
+        @Param({"1000", "10000", "100000"})
+        private int numberOfFacts;
+
+        private KieBase kieBase;
+        private List<Person> facts;
+
+        @Setup(Level.Trial)
+        public void setUpKieBase() {
+            kieBase = type.useRuleModel ?
+                      BenchmarkUtil.createCanonicalKieBaseFromDrl( getDrl( scenario ), EventProcessingOption.CLOUD ) :
+                      BenchmarkUtil.createKieBaseFromDrl( getDrl( scenario ) );
+            facts = createFacts( numberOfFacts );
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class PopulatedSession {
+
+        private List<Person> facts;
+        private KieSession kieSession;
+        private List<FactHandle> factHandles;
+
+        @Setup(Level.Invocation)
+        public void setUpSession( Rules rules ) {
+            // the facts are modified by the update benchmark, so each invocation gets its own
+            facts = createFacts( rules.numberOfFacts );
+            kieSession = rules.kieBase.newKieSession();
+            factHandles = new ArrayList<>( facts.size() );
+            for (Person fact : facts) {
+                factHandles.add( kieSession.insert( fact ) );
+            }
+            kieSession.fireAllRules();
+        }
+
+        @TearDown(Level.Invocation)
+        public void disposeSession() {
+            kieSession.dispose();
+        }
+    }
+
+    @Benchmark
+    public int insertAndFire( Rules rules ) {
+        KieSession session = rules.kieBase.newKieSession();
+        try {
+            for (Person fact : rules.facts) {
+                session.insert( fact );
+            }
+            return session.fireAllRules();
+        } finally {
+            session.dispose();
+        }
+    }
+
+    @Benchmark
+    public int updateAndFire( PopulatedSession session ) {
+        for (int i = 0; i < session.factHandles.size(); i++) {
+            Person fact = session.facts.get( i );
+            fact.setAge( fact.getAge() + 1 );
+            session.kieSession.update( session.factHandles.get( i ), fact, "age" );
+        }
+        return session.kieSession.fireAllRules();
+    }
+
+    @Benchmark
+    public int deleteAndFire( PopulatedSession session ) {
+        for (FactHandle factHandle : session.factHandles) {
+            session.kieSession.delete( factHandle );
+        }
+        return session.kieSession.fireAllRules();
+    }
+
+    static List<Person> createFacts( int numberOfFacts ) {
+        List<Person> facts = new ArrayList<>( numberOfFacts );
+        facts.add( new Person( "Mark", 37 ) );
+        for (int i = 1; i < numberOfFacts; i++) {
+            facts.add( new Person( "Person" + i, i % 100 ) );
+        }
+        return facts;
+    }
+
+    static String getDrl( Scenario scenario ) {
+        StringBuilder sb = new StringBuilder();
+        sb.append( "package org.drools.modelcompiler.benchmarks;\n" );
+        sb.append( "import " + Person.class.getCanonicalName() + ";\n" );
+        switch (scenario) {
+            case ALPHA:
+                for (int i = 0; i < 10; i++) {
+                    sb.append( "rule R" + i + " when\n" +
+                               "  $p : Person( age > " + ( i * 10 ) + " )\n" +
+                               "then end\n" );
+                }
+                break;
+            case JOIN:
+                sb.append( "rule R when\n" +
+                           "  $mark : Person( name == \"Mark\" )\n" +
+                           "  $older : Person( age > $mark.age )\n" +
+                           "then end\n" );
+                break;
+            case ACCUMULATE:
+                sb.append( "rule R when\n" +
+                           "  accumulate( Person( age > 30, $age : age ); $sum : sum( $age ) )\n" +
+                           "then end\n" );
+                break;
+            case NOT_EXISTS:
+                sb.append( "rule R1 when\n" +
+                           "  $mark : Person( name == \"Mark\" )\n" +
+                           "  not( Person( age > 99 ) )\n" +
+                           "then end\n" );
+                sb.append( "rule R2 when\n" +
+                           "  $mark : Person( name == \"Mark\" )\n" +
+                           "  exists( Person( age < 10 ) )\n" +
+                           "then end\n" );
+                break;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The rules of {@link #getDrl(Scenario)} written with the DSL, for the benchmarks building the KieBase directly
+     * from a model.
+     */
+    static ModelImpl getModel( Scenario scenario, boolean withExprId ) {
+        ModelImpl model = new ModelImpl();
+        Variable<Person> markV = declarationOf( type( Person.class ) );
+        Variable<Person> otherV = declarationOf( type( Person.class ) );
+
+        switch (scenario) {
+            case ALPHA:
+                for (int i = 0; i < 10; i++) {
+                    int age = i * 10;
+                    model.addRule( rule( "R" + i )
+                                           .view( exprWithOptionalId( withExprId, "exprAge" + i, markV, p -> p.getAge() > age )
+                                                          .indexedBy( int.class, ConstraintType.GREATER_THAN, Person::getAge, age )
+                                                          .reactOn( "age" ) )
+                                           .then( on( markV ).execute( p -> { } ) ) );
+                }
+                break;
+            case JOIN:
+                model.addRule( rule( "R" )
+                                       .view( isMark( markV, withExprId ),
+                                              ( withExprId ? expr( "exprOlder", otherV, markV, (p1, p2) -> p1.getAge() > p2.getAge() ) :
+                                                             expr( otherV, markV, (p1, p2) -> p1.getAge() > p2.getAge() ) )
+                                                      .indexedBy( int.class, ConstraintType.GREATER_THAN, Person::getAge, Person::getAge )
+                                                      .reactOn( "age" ) )
+                                       .then( on( otherV, markV ).execute( (p1, p2) -> { } ) ) );
+                break;
+            case ACCUMULATE:
+                Variable<Integer> sumV = declarationOf( type( Integer.class ) );
+                model.addRule( rule( "R" )
+                                       .view( accumulate( exprWithOptionalId( withExprId, "exprAge", otherV, p -> p.getAge() > 30 ).reactOn( "age" ),
+                                                          sum( Person::getAge ).as( sumV ) ) )
+                                       .then( on( sumV ).execute( sum -> { } ) ) );
+                break;
+            case NOT_EXISTS:
+                model.addRule( rule( "R1" )
+                                       .view( isMark( markV, withExprId ),
+                                              not( exprWithOptionalId( withExprId, "exprNot", otherV, p -> p.getAge() > 99 ).reactOn( "age" ) ) )
+                                       .then( on( markV ).execute( p -> { } ) ) );
+                model.addRule( rule( "R2" )
+                                       .view( isMark( markV, withExprId ),
+                                              exists( exprWithOptionalId( withExprId, "exprExists", otherV, p -> p.getAge() < 10 ).reactOn( "age" ) ) )
+                                       .then( on( markV ).execute( p -> { } ) ) );
+                break;
+        }
+        return model;
+    }
+
+    private static Expr1ViewItem<Person> isMark( Variable<Person> markV, boolean withExprId ) {
+        return exprWithOptionalId( withExprId, "exprMark", markV, p -> p.getName().equals( "Mark" ) )
+                .indexedBy( String.class, ConstraintType.EQUAL, Person::getName, "Mark" )
+                .reactOn( "name" );
+    }
+
+    private static <T> Expr1ViewItem<T> exprWithOptionalId( boolean withExprId, String exprId, Variable<T> var, Predicate1<T> predicate ) {
+        return withExprId ? expr( exprId, var, predicate ) : expr( var, predicate );
+    }
+}
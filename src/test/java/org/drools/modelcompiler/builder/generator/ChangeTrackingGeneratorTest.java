@@ -0,0 +1,48 @@
+package org.drools.modelcompiler.builder.generator;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.drools.javaparser.JavaParser;
+import org.drools.javaparser.ast.CompilationUnit;
+import org.drools.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import org.drools.javaparser.ast.body.ConstructorDeclaration;
+import org.drools.javaparser.ast.body.MethodDeclaration;
+import org.drools.modelcompiler.Person;
+import org.junit.Test;
+
+import static java.util.Arrays.asList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ChangeTrackingGeneratorTest {
+
+    @Test
+    public void testGenerateChangeTrackedPerson() {
+        assertTrue( ChangeTrackingGenerator.isTrackable( Person.class ) );
+        assertEquals( "org.drools.modelcompiler.PersonChangeTracked", ChangeTrackingGenerator.getChangeTrackedClassName( Person.class ) );
+
+        CompilationUnit cu = JavaParser.parse( ChangeTrackingGenerator.generateSource( Person.class ) );
+        ClassOrInterfaceDeclaration trackedClass = cu.getClassByName( "PersonChangeTracked" ).get();
+
+        assertEquals( 2, trackedClass.getChildNodesByType( ConstructorDeclaration.class ).size() );
+
+        List<String> methods = trackedClass.getChildNodesByType( MethodDeclaration.class ).stream()
+                                           .map( MethodDeclaration::getNameAsString )
+                                           .collect( Collectors.toList() );
+        assertTrue( methods.containsAll( asList( "setName", "setAge", "getModifiedProperties", "resetModifiedProperties" ) ) );
+        assertFalse( methods.contains( "getName" ) );
+    }
+
+    @Test
+    public void testNotTrackableClasses() {
+        assertFalse( ChangeTrackingGenerator.isTrackable( String.class ) );
+        assertFalse( ChangeTrackingGenerator.isTrackable( Runnable.class ) );
+        assertFalse( ChangeTrackingGenerator.isTrackable( int.class ) );
+
+        // a final setter couldn't be overridden, so its changes would be silently missed
+        assertFalse( ChangeTrackingGenerator.isTrackable( FinalSetterPerson.class ) );
+    }
+}
@@ -0,0 +1,15 @@
+package org.drools.modelcompiler.builder.generator;
+
+import org.drools.modelcompiler.Person;
+
+public class FinalSetterPerson extends Person {
+
+    public FinalSetterPerson( String name, int age ) {
+        super( name, age );
+    }
+
+    @Override
+    public final void setName( String name ) {
+        super.setName( name );
+    }
+}